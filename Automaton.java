@@ -0,0 +1,113 @@
+package fsm.core;
+
+import java.nio.ByteBuffer;
+
+// Int-indexed, read-only execution view of an FSM. Implementations are safe to share between threads.
+public interface Automaton {
+    // Negative results of run/trace; any result >= 0 is the index of the state the input ended in.
+    int NO_INITIAL_STATE = -1;
+    int INVALID_SYMBOL = -2;
+    int NO_TRANSITION = -3;
+
+    int initialState();
+
+    // Symbol index for an input character, or -1 if it is not a declared symbol.
+    int symbolIndex(char ch);
+
+    // Next state, or -1 if the transition is undefined.
+    int next(int state, int symbol);
+
+    boolean isFinal(int state);
+
+    String stateName(int state);
+
+    String symbolName(int symbol);
+
+    int stateCount();
+
+    int symbolCount();
+
+    // True when state indexes are built on the fly per thread (LazyDfa): an index is only valid on the
+    // thread that received it, until that thread's next step, so it must not be cached or shared.
+    default boolean isLazy() {
+        return false;
+    }
+
+    // Quiet execution: no output and no allocation per character.
+    default int run(CharSequence input) {
+        int state = initialState();
+        if (state < 0) {
+            return NO_INITIAL_STATE;
+        }
+        return run(state, input, 0, input.length());
+    }
+
+    // Continues a run in the given state over input[from, to).
+    default int run(int state, CharSequence input, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int symbol = symbolIndex(input.charAt(i));
+            if (symbol < 0) {
+                return INVALID_SYMBOL;
+            }
+            state = next(state, symbol);
+            if (state < 0) {
+                return NO_TRANSITION;
+            }
+        }
+        return state;
+    }
+
+    // Quiet execution of raw bytes, each read as the Latin-1 character of the same code.
+    default int run(byte[] input) {
+        int state = initialState();
+        if (state < 0) {
+            return NO_INITIAL_STATE;
+        }
+        return run(state, ByteBuffer.wrap(input), 0, input.length);
+    }
+
+    // Continues a run in the given state over bytes [from, to) of the buffer; its position is ignored.
+    default int run(int state, ByteBuffer input, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int symbol = symbolIndex((char) (input.get(i) & 0xFF));
+            if (symbol < 0) {
+                return INVALID_SYMBOL;
+            }
+            state = next(state, symbol);
+            if (state < 0) {
+                return NO_TRANSITION;
+            }
+        }
+        return state;
+    }
+
+    default int trace(CharSequence input, TraceSink sink) {
+        int state = initialState();
+        if (state < 0) {
+            return NO_INITIAL_STATE;
+        }
+        sink.state(stateName(state));
+        for (int i = 0, n = input.length(); i < n; i++) {
+            char ch = input.charAt(i);
+            int symbol = symbolIndex(ch);
+            if (symbol < 0) {
+                sink.invalidSymbol(ch);
+                return INVALID_SYMBOL;
+            }
+            int target = next(state, symbol);
+            if (target < 0) {
+                sink.noTransition(stateName(state), symbolName(symbol));
+                return NO_TRANSITION;
+            }
+            state = target;
+            sink.state(stateName(state));
+        }
+        sink.result(isFinal(state));
+        return state;
+    }
+
+    // True if a run/trace result ended in a final state.
+    default boolean accepts(int result) {
+        return result >= 0 && isFinal(result);
+    }
+}
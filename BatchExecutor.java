@@ -0,0 +1,92 @@
+package fsm.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Evaluates newline-separated inputs against one compiled FSM snapshot, in parallel, keeping input order.
+// Table engines run each task's inputs interleaved (see InterleavedExecutor); other engines one by one.
+public final class BatchExecutor {
+    private static final int CHUNK_LINES = 1 << 16;    // inputs held in memory at a time
+    private static final int LEAF_SIZE = 512;          // inputs evaluated by one fork-join task
+
+    private final Automaton table;
+    private final InterleavedExecutor interleaved;     // null unless the engine is a CompiledFSM
+    private final ForkJoinPool pool;
+
+    public BatchExecutor(Automaton table) {
+        this(table, ForkJoinPool.commonPool());
+    }
+
+    public BatchExecutor(Automaton table, ForkJoinPool pool) {
+        this.table = table;
+        this.interleaved = table instanceof CompiledFSM ? new InterleavedExecutor(table) : null;
+        this.pool = pool;
+    }
+
+    // Writes YES/NO per input line to the output file and returns the number of inputs processed.
+    public long execute(Path inputFile, Path outputFile) throws IOException {
+        String[] lines = new String[CHUNK_LINES];
+        boolean[] results = new boolean[CHUNK_LINES];
+        long total = 0;
+        try (BufferedReader reader = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)) {
+            int count;
+            while ((count = readChunk(reader, lines)) > 0) {
+                pool.invoke(new EvaluateTask(lines, results, 0, count));
+                for (int i = 0; i < count; i++) {
+                    writer.write(results[i] ? "YES" : "NO");
+                    writer.newLine();
+                }
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    private static int readChunk(BufferedReader reader, String[] lines) throws IOException {
+        int count = 0;
+        String line;
+        while (count < lines.length && (line = reader.readLine()) != null) {
+            lines[count++] = line;
+        }
+        return count;
+    }
+
+    private final class EvaluateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] inputs;
+        private final boolean[] results;
+        private final int from;
+        private final int to;
+
+        EvaluateTask(String[] inputs, boolean[] results, int from, int to) {
+            this.inputs = inputs;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                if (interleaved != null) {
+                    interleaved.accepts(inputs, results, from, to);
+                    return;
+                }
+                for (int i = from; i < to; i++) {
+                    results[i] = table.accepts(table.run(inputs[i]));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new EvaluateTask(inputs, results, from, mid), new EvaluateTask(inputs, results, mid, to));
+        }
+    }
+}
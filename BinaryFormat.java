@@ -0,0 +1,195 @@
+package fsm.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Compiled FSM file layout (all integers are unsigned LEB128 varints unless noted):
+ *   magic "FSMB" (4 bytes), version (1 byte)
+ *   symbol count, then each symbol as length + UTF-8 bytes
+ *   state count, then each state as length + UTF-8 bytes
+ *   initial state index + 1 (0 when there is no initial state)
+ *   transition count, then (symbol, current state, next state) index triples in declaration order;
+ *       symbol index == symbol count marks an EPSILON move (version 2)
+ *   final-state bitmap, (state count + 7) / 8 bytes, bit i set if state i is final
+ */
+public final class BinaryFormat {
+    static final int MAGIC = 0x46534D42;
+    static final int VERSION = 2;           // version 1 files are read as well
+
+    private BinaryFormat() {}
+
+    public static boolean isBinary(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the magic is complete or the file ends
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Writes an already validated definition; transitions are written in the order given.
+    static void write(Collection<String> symbols, Collection<String> states, Collection<String> finalStates,
+                      Collection<Transition> transitions, String initialState, Path file) throws IOException {
+        Map<String, Integer> symbolIndex = indexes(symbols);
+        Map<String, Integer> stateIndex = indexes(states);
+        Encoder out = new Encoder(64 + 4 * transitions.size());
+        out.buffer.putInt(MAGIC).put((byte) VERSION);
+
+        out.putVarInt(symbols.size());
+        for (String symbol : symbols) {
+            out.putString(symbol);
+        }
+        out.putVarInt(states.size());
+        for (String state : states) {
+            out.putString(state);
+        }
+        out.putVarInt(initialState == null ? 0 : stateIndex.get(initialState) + 1);
+
+        out.putVarInt(transitions.size());
+        for (Transition t : transitions) {
+            out.putVarInt(t.isEpsilon() ? symbols.size() : symbolIndex.get(t.getSymbol()));
+            out.putVarInt(stateIndex.get(t.getCurrentState()));
+            out.putVarInt(stateIndex.get(t.getNextState()));
+        }
+
+        byte[] bitmap = new byte[(states.size() + 7) / 8];
+        for (String state : finalStates) {
+            int i = stateIndex.get(state);
+            bitmap[i >>> 3] |= (byte) (1 << (i & 7));
+        }
+        out.ensure(bitmap.length);
+        out.buffer.put(bitmap);
+
+        ByteBuffer data = out.buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+
+    static void read(FSM fsm, Path file) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File is too large.");
+            }
+            in = ByteBuffer.allocate((int) channel.size());
+            while (in.hasRemaining() && channel.read(in) >= 0) {
+                // read the whole file
+            }
+            in.flip();
+        }
+
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a compiled FSM file.");
+            }
+            int version = in.get();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported compiled FSM version " + version + ".");
+            }
+
+            String[] symbols = new String[getVarInt(in)];
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = getString(in);
+            }
+            String[] states = new String[getVarInt(in)];
+            for (int i = 0; i < states.length; i++) {
+                states[i] = getString(in);
+            }
+            int initial = getVarInt(in) - 1;
+
+            List<Transition> transitions = new ArrayList<>();
+            for (int i = getVarInt(in); i > 0; i--) {
+                int symbol = getVarInt(in);
+                transitions.add(new Transition(symbol == symbols.length ? Transition.EPSILON : symbols[symbol],
+                        states[getVarInt(in)], states[getVarInt(in)]));
+            }
+
+            byte[] bitmap = new byte[(states.length + 7) / 8];
+            in.get(bitmap);
+            List<String> finalStates = new ArrayList<>();
+            for (int i = 0; i < states.length; i++) {
+                if ((bitmap[i >>> 3] & (1 << (i & 7))) != 0) {
+                    finalStates.add(states[i]);
+                }
+            }
+
+            fsm.define(List.of(symbols), List.of(states), finalStates, transitions, initial < 0 ? null : states[initial]);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt compiled FSM file.", e);
+        }
+    }
+
+    private static Map<String, Integer> indexes(Collection<String> names) {
+        Map<String, Integer> index = new HashMap<>(names.size() * 2);
+        for (String name : names) {
+            index.put(name, index.size());
+        }
+        return index;
+    }
+
+    private static int getVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[getVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Encoder {
+        ByteBuffer buffer;
+
+        Encoder(int capacity) {
+            buffer = ByteBuffer.allocate(capacity);
+        }
+
+        void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                grown.put(buffer.flip());
+                buffer = grown;
+            }
+        }
+
+        void putVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void putString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putVarInt(bytes.length);
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+}
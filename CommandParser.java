@@ -1,10 +1,35 @@
 package fsm.core.io;
+import fsm.core.Automaton;
+import fsm.core.BatchExecutor;
+import fsm.core.BinaryFormat;
+import fsm.core.ExecutionMetrics;
+import fsm.core.ExecutionSession;
 import fsm.core.FSM;
+import fsm.core.FsmGroup;
+import fsm.core.FsmSnapshot;
+import fsm.core.Journal;
+import fsm.core.LazyDfa;
+import fsm.core.MappedImage;
+import fsm.core.PrefixCache;
+import fsm.core.ResultCache;
+import fsm.core.ScanExecutor;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 public class CommandParser {
     private final FSM fsm;
     private final Logger logger;
+    private final List<String> groupNames = new ArrayList<>();
+    private final List<FsmSnapshot> groupMachines = new ArrayList<>();
+    private FsmGroup group;                 // built on the first EXECUTE-ALL after the group changed
 
     public CommandParser(FSM fsm) {
         this.fsm = fsm;
@@ -12,45 +37,67 @@ public class CommandParser {
     }
 
     public void parse(String commandLine) {
-        if (commandLine == null || commandLine.trim().isEmpty()) {
+        if (commandLine == null) {
             return;
         }
+        execute(CommandTokenizer.tokenize(commandLine));
+    }
 
-        int semicolonIndex = commandLine.indexOf(';');
-        if (semicolonIndex != -1) {
-            commandLine = commandLine.substring(0, semicolonIndex);
+    // Runs every command of a script as it is read; used for script files given to Main and for LOAD.
+    public void parseScript(Reader script) throws IOException {
+        CommandTokenizer tokenizer = new CommandTokenizer(script);
+        String[] tokens;
+        while ((tokens = tokenizer.nextCommand()) != null) {
+            try {
+                execute(tokens);
+            } catch (Exception e) {
+                System.out.println("Error processing command at line " + tokenizer.line() + ": " + e.getMessage());
+                log("Error processing command at line " + tokenizer.line() + ": " + e.getMessage());
+            }
         }
-        commandLine = commandLine.trim();
-        if (commandLine.isEmpty()) {
+    }
+
+    private void execute(String[] tokens) {
+        if (tokens.length == 0) {
             return;
         }
 
-        log(commandLine);
+        if (logger.isLogging()) {
+            log(String.join(" ", tokens));
+        }
 
-        String[] tokens = commandLine.split("\\s+");
         String command = tokens[0].toUpperCase();
 
+        // Definition commands go through fsm.update so other threads see each command applied atomically.
         try {
             switch (command) {
                 case "EXIT":
                     log("TERMINATED BY USER");
                     System.out.println("TERMINATED BY USER");
+                    logger.stopLogging();
+                    fsm.closeJournal();
                     System.exit(0);
                     break;
                 case "SYMBOLS":
-                    handleSymbols(tokens);
+                    fsm.update(() -> handleSymbols(tokens));
                     break;
                 case "STATES":
-                    handleStates(tokens);
+                    fsm.update(() -> handleStates(tokens));
                     break;
                 case "INITIAL-STATE":
-                    handleInitialState(tokens);
+                    fsm.update(() -> handleInitialState(tokens));
                     break;
                 case "FINAL-STATES":
-                    handleFinalStates(tokens);
+                    fsm.update(() -> handleFinalStates(tokens));
                     break;
                 case "TRANSITIONS":
-                    handleTransitions(tokens);
+                    fsm.update(() -> handleTransitions(tokens, false));
+                    break;
+                case "ADD-TRANSITIONS":
+                    fsm.update(() -> handleTransitions(tokens, true));
+                    break;
+                case "DFA-CACHE":
+                    handleDfaCache(tokens);
                     break;
                 case "PRINT":
                     handlePrint(tokens);
@@ -58,8 +105,26 @@ public class CommandParser {
                 case "EXECUTE":
                     handleExecute(tokens);
                     break;
+                case "EXECUTE-FILE":
+                    handleExecuteFile(tokens);
+                    break;
+                case "EXECUTE-BATCH":
+                    handleExecuteBatch(tokens);
+                    break;
+                case "EXECUTE-ALL":
+                    handleExecuteAll(tokens);
+                    break;
+                case "GROUP":
+                    handleGroup(tokens);
+                    break;
+                case "SCAN":
+                    handleScan(tokens);
+                    break;
+                case "MINIMIZE":
+                    fsm.update(this::handleMinimize);
+                    break;
                 case "CLEAR":
-                    fsm.clear();
+                    fsm.update(fsm::clear);
                     log("FSM cleared.");
                     System.out.println("FSM cleared.");
                     break;
@@ -69,8 +134,29 @@ public class CommandParser {
                 case "COMPILE":
                     handleCompile(tokens);
                     break;
+                case "COMPILE-JIT":
+                    handleCompileJit(tokens);
+                    break;
+                case "COMPILE-IMAGE":
+                    handleCompileImage(tokens);
+                    break;
                 case "LOAD":
-                    handleLoad(tokens);
+                    fsm.update(() -> handleLoad(tokens));
+                    break;
+                case "STATS":
+                    handleStats(tokens);
+                    break;
+                case "CACHE":
+                    handleCache(tokens);
+                    break;
+                case "PREFIX-CACHE":
+                    handlePrefixCache(tokens);
+                    break;
+                case "SYMBOL-CLASSES":
+                    handleSymbolClasses(tokens);
+                    break;
+                case "JOURNAL":
+                    fsm.update(() -> handleJournal(tokens));
                     break;
                 default:
                     System.out.println("Warning: Invalid command '" + command + "'");
@@ -104,7 +190,8 @@ public class CommandParser {
             fsm.addState(tokens[i]);
         }
     }
-        private void handleInitialState(String[] tokens) {
+
+    private void handleInitialState(String[] tokens) {
         if (tokens.length < 2) {
             System.out.println("Error: No initial state specified.");
             log("Error: No initial state specified.");
@@ -123,35 +210,305 @@ public class CommandParser {
             fsm.addFinalState(tokens[i]);
         }
     }
-}
-private void handleTransitions(String[] tokens) {
-        String combined = String.join(" ", tokens);
-        combined = combined.substring("TRANSITIONS".length()).trim();
-        String[] transitions = combined.split(",");
-
-        for (String transition : transitions) {
-            String[] parts = transition.trim().split("\\s+");
-            if (parts.length != 3) {
-                System.out.println("Error: Invalid transition format.");
-                log("Error: Invalid transition format.");
-                continue;
+
+    // Transitions are "symbol current next" triples separated by commas; a comma may stand alone or stick to a token.
+    // Like String.split, empty groups at the end are ignored. ADD-TRANSITIONS keeps existing targets of a pair.
+    private void handleTransitions(String[] tokens, boolean keepTargets) {
+        if (tokens.length == 1) {
+            addTransition(null, 0, keepTargets);
+            return;
+        }
+        String[] parts = new String[3];
+        int count = 0;
+        int emptyGroups = 0;
+        for (int i = 1; i <= tokens.length; i++) {
+            String token = i < tokens.length ? tokens[i] : ",";
+            int start = 0;
+            for (int comma = token.indexOf(','); ; comma = token.indexOf(',', start)) {
+                int end = comma < 0 ? token.length() : comma;
+                if (end > start) {
+                    if (count < 3) {
+                        parts[count] = token.substring(start, end);
+                    }
+                    count++;
+                }
+                if (comma < 0) {
+                    break;
+                }
+                if (count == 0) {
+                    emptyGroups++;
+                } else {
+                    for (; emptyGroups > 0; emptyGroups--) {
+                        addTransition(parts, 0, keepTargets);
+                    }
+                    addTransition(parts, count, keepTargets);
+                    count = 0;
+                }
+                start = comma + 1;
             }
-            String symbol = parts[0];
-            String fromState = parts[1];
-            String toState = parts[2];
-            fsm.addTransition(symbol, fromState, toState);
         }
+    }
+
+    private void addTransition(String[] parts, int count, boolean keepTargets) {
+        if (count != 3) {
+            System.out.println("Error: Invalid transition format.");
+            log("Error: Invalid transition format.");
+            return;
+        }
+        if (keepTargets) {
+            fsm.addTransitionTarget(parts[0], parts[1], parts[2]);
+        } else {
+            fsm.addTransition(parts[0], parts[1], parts[2]);
+        }
+    }
 
     private void handleExecute(String[] tokens) {
+        // '-' may be a symbol, so only the mode names themselves are taken as a mode.
+        boolean hasMode = tokens.length > 1 && isExecuteMode(tokens[1]);
+        String mode = hasMode ? tokens[1].toUpperCase() : "-TRACE";
+        int inputIndex = hasMode ? 2 : 1;
+        if (tokens.length <= inputIndex) {
+            System.out.println("Error: No input string provided for execution.");
+            log("Error: No input string provided for execution.");
+            return;
+        }
+
+        switch (mode) {
+            case "-TRACE":
+                fsm.execute(tokens[inputIndex]);
+                break;
+            case "-QUIET":
+                String result = fsm.accepts(tokens[inputIndex]) ? "YES" : "NO";
+                System.out.println(result);
+                log(result);
+                break;
+            case "-PARALLEL":
+                FsmSnapshot snapshot = fsm.snapshot();
+                String verdict = snapshot.automaton().accepts(snapshot.parallelExecutor().run(tokens[inputIndex])) ? "YES" : "NO";
+                System.out.println(verdict);
+                log(verdict);
+                break;
+            case "-LOG":
+                if (!logger.isLogging()) {
+                    System.out.println("Error: EXECUTE -LOG requires logging to be enabled.");
+                    return;
+                }
+                fsm.execute(tokens[inputIndex], new LoggerTraceSink(logger));
+                break;
+        }
+    }
+
+    private static boolean isExecuteMode(String token) {
+        switch (token.toUpperCase()) {
+            case "-TRACE":
+            case "-QUIET":
+            case "-PARALLEL":
+            case "-LOG":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // EXECUTE-ALL <input>: runs every machine of the group over the input in one pass.
+    private void handleExecuteAll(String[] tokens) {
         if (tokens.length < 2) {
             System.out.println("Error: No input string provided for execution.");
             log("Error: No input string provided for execution.");
             return;
         }
-        fsm.execute(tokens[1]);
+        if (groupMachines.isEmpty()) {
+            System.out.println("Error: The group is empty. Use GROUP <file> or GROUP CURRENT.");
+            log("Error: The group is empty.");
+            return;
+        }
+        if (group == null) {
+            group = new FsmGroup(groupMachines);
+        }
+        BitSet accepted = group.accepts(tokens[1]);
+        StringBuilder bitmap = new StringBuilder(groupMachines.size());
+        List<String> accepting = new ArrayList<>();
+        for (int m = 0; m < groupMachines.size(); m++) {
+            bitmap.append(accepted.get(m) ? '1' : '0');
+            if (accepted.get(m)) {
+                accepting.add(groupNames.get(m));
+            }
+        }
+        String result = bitmap + " (accepted by " + accepted.cardinality() + " of " + groupMachines.size() + " machines"
+                + (accepting.isEmpty() ? ")" : ": " + String.join(", ", accepting) + ")");
+        System.out.println(result);
+        log(result);
+    }
+
+    // GROUP <file> [file ...] | CURRENT | CLEAR; without an option lists the machines EXECUTE-ALL runs.
+    // Files are compiled machines, images or command scripts, as for LOAD. CURRENT adds the machine as
+    // it is defined now; later changes to it do not reach the group.
+    private void handleGroup(String[] tokens) {
+        String option = tokens.length > 1 ? tokens[1].toUpperCase() : "";
+        String result;
+        switch (option) {
+            case "CLEAR":
+                groupNames.clear();
+                groupMachines.clear();
+                group = null;
+                result = "Group cleared.";
+                break;
+            case "":
+                result = groupMachines.isEmpty() ? "The group is empty. Use GROUP <file> or GROUP CURRENT."
+                        : "Group of " + groupMachines.size() + " machines: " + String.join(", ", groupNames);
+                break;
+            case "CURRENT":
+                groupNames.add("CURRENT");
+                groupMachines.add(fsm.snapshot());
+                group = null;
+                result = "Group size: " + groupMachines.size() + ".";
+                break;
+            default:
+                for (int i = 1; i < tokens.length; i++) {
+                    FSM member = new FSM();
+                    String filename = tokens[i].trim();
+                    new CommandParser(member).load(filename);
+                    if (member.getInitialState() == null) {
+                        System.out.println("Warning: '" + filename + "' defines no initial state and was not added to the group.");
+                        continue;
+                    }
+                    groupNames.add(filename);
+                    groupMachines.add(member.snapshot());
+                    group = null;
+                }
+                result = "Group size: " + groupMachines.size() + ".";
+                break;
+        }
+        System.out.println(result);
+        log(result);
+    }
+
+    private void handleExecuteFile(String[] tokens) {
+        boolean parallel = tokens.length > 1 && tokens[1].equalsIgnoreCase("-PARALLEL");
+        int fileIndex = parallel ? 2 : 1;
+        String filename = tokens.length > fileIndex ? tokens[fileIndex] : null;
+        if (filename == null) {
+            System.out.println("Error: No input file provided for execution.");
+            log("Error: No input file provided for execution.");
+            return;
+        }
+        if (fsm.getInitialState() == null) {
+            System.out.println("Error: Initial state is not set.");
+            log("Error: Initial state is not set.");
+            return;
+        }
+
+        ExecutionSession session = fsm.openSession().skipLineBreaks();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (parallel) {
+                session.parallel().feedMapped(channel);
+            } else {
+                session.feed(channel);
+            }
+        } catch (IOException e) {
+            System.out.println("Error: Could not read input file. " + e.getMessage());
+            log("Error: Could not read input file. " + e.getMessage());
+            return;
+        }
+
+        String result;
+        if (session.currentState() == Automaton.INVALID_SYMBOL) {
+            result = "Invalid symbol after " + session.consumed() + " characters.\nNO";
+        } else if (session.currentState() == Automaton.NO_TRANSITION) {
+            result = "No valid transition after " + session.consumed() + " characters.\nNO";
+        } else {
+            result = session.consumed() + " characters, final state " + session.currentStateName()
+                    + "\n" + (session.isAccepting() ? "YES" : "NO");
+        }
+        System.out.println(result);
+        log(result);
+    }
+
+    private void handleExecuteBatch(String[] tokens) {
+        if (tokens.length < 3) {
+            System.out.println("Error: EXECUTE-BATCH requires an input file and an output file.");
+            log("Error: EXECUTE-BATCH requires an input file and an output file.");
+            return;
+        }
+        if (fsm.getInitialState() == null) {
+            System.out.println("Error: Initial state is not set.");
+            log("Error: Initial state is not set.");
+            return;
+        }
+
+        BatchExecutor executor = new BatchExecutor(fsm.automaton());
+        long start = System.nanoTime();
+        try {
+            long count = executor.execute(Paths.get(tokens[1]), Paths.get(tokens[2]));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            String summary = String.format("Batch complete: %d inputs in %.3f s (%.0f inputs/sec), results written to '%s'",
+                    count, seconds, count / Math.max(seconds, 1e-9), tokens[2]);
+            System.out.println(summary);
+            log(summary);
+        } catch (IOException e) {
+            System.out.println("Error: Could not run batch. " + e.getMessage());
+            log("Error: Could not run batch. " + e.getMessage());
+        }
     }
 
-     private void handlePrint(String[] tokens) {
+    // SCAN <file> [output file]: end offsets of every accepted substring go to the output file, or are only counted.
+    private void handleScan(String[] tokens) {
+        if (tokens.length < 2) {
+            System.out.println("Error: No input file provided for scan.");
+            log("Error: No input file provided for scan.");
+            return;
+        }
+        if (fsm.getInitialState() == null) {
+            System.out.println("Error: Initial state is not set.");
+            log("Error: Initial state is not set.");
+            return;
+        }
+
+        ScanExecutor scanner = new ScanExecutor(fsm.snapshot());
+        Path input = Paths.get(tokens[1]);
+        long start = System.nanoTime();
+        try {
+            long matches;
+            if (tokens.length > 2) {
+                try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(tokens[2]), StandardCharsets.US_ASCII)) {
+                    matches = scanner.scan(input, offset -> {
+                        try {
+                            writer.write(Long.toString(offset));
+                            writer.newLine();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                }
+            } else {
+                matches = scanner.scan(input, null);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double megabytes = Files.size(input) / 1e6;
+            String summary = String.format("Scan complete: %d matches in %.1f MB, %.3f s (%.1f MB/s)%s",
+                    matches, megabytes, seconds, megabytes / Math.max(seconds, 1e-9),
+                    tokens.length > 2 ? ", end offsets written to '" + tokens[2] + "'" : "");
+            System.out.println(summary);
+            log(summary);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error: Could not scan file. " + e.getMessage());
+            log("Error: Could not scan file. " + e.getMessage());
+        }
+    }
+
+    private void handleMinimize() {
+        int statesBefore = fsm.getStates().size();
+        int transitionsBefore = fsm.getTransitions().size();
+        if (!fsm.minimize()) {
+            return;
+        }
+        String summary = "Minimized: states " + statesBefore + " -> " + fsm.getStates().size()
+                + ", transitions " + transitionsBefore + " -> " + fsm.getTransitions().size();
+        System.out.println(summary);
+        log(summary);
+    }
+
+    private void handlePrint(String[] tokens) {
         if (tokens.length == 1) {
             fsm.print();
         } else {
@@ -159,8 +516,7 @@ private void handleTransitions(String[] tokens) {
         }
     }
 
-    }
-private void handleLog(String[] tokens) {
+    private void handleLog(String[] tokens) {
         if (tokens.length == 1) {
             if (logger.isLogging()) {
                 logger.stopLogging();
@@ -168,6 +524,24 @@ private void handleLog(String[] tokens) {
             } else {
                 System.out.println("LOGGING was not enabled");
             }
+        } else if (tokens.length > 2 && tokens[2].equalsIgnoreCase("ASYNC")) {
+            // LOG <file> ASYNC [flush interval ms] [BLOCK|DROP]
+            long flushInterval = 100;
+            Logger.Backpressure backpressure = Logger.Backpressure.BLOCK;
+            for (int i = 3; i < tokens.length; i++) {
+                String option = tokens[i].toUpperCase();
+                if (option.equals("BLOCK") || option.equals("DROP")) {
+                    backpressure = Logger.Backpressure.valueOf(option);
+                } else {
+                    try {
+                        flushInterval = Long.parseLong(option);
+                    } catch (NumberFormatException e) {
+                        System.out.println("Error: Invalid LOG option '" + tokens[i] + "'.");
+                        return;
+                    }
+                }
+            }
+            logger.startAsyncLogging(tokens[1], flushInterval, backpressure);
         } else {
             logger.startLogging(tokens[1]);
         }
@@ -181,47 +555,278 @@ private void handleLog(String[] tokens) {
         }
         fsm.compileToFile(tokens[1]);
     }
-private void handleLoad(String[] tokens) {
+
+    private void handleCompileJit(String[] tokens) {
+        if (tokens.length > 1 && tokens[1].equalsIgnoreCase("OFF")) {
+            fsm.setJitEnabled(false);
+            System.out.println("JIT disabled: using the table engine.");
+            log("JIT disabled: using the table engine.");
+            return;
+        }
+        String result = fsm.setJitEnabled(true)
+                ? "JIT compile successful: " + fsm.getStates().size() + " states run on generated bytecode."
+                : "JIT enabled, but this FSM cannot be JIT compiled (more than " + FSM.JIT_MAX_STATES
+                        + " states, too many symbols, nondeterministic or no initial state); using the table engine.";
+        System.out.println(result);
+        log(result);
+    }
+
+    private void handleCompileImage(String[] tokens) {
         if (tokens.length < 2) {
-            System.out.println("Error: No filename provided for load.");
-            log("Error: No filename provided for load.");
+            System.out.println("Error: No filename provided for compile.");
+            log("Error: No filename provided for compile.");
             return;
         }
+        fsm.compileToImage(tokens[1]);
+    }
 
-        String filename = tokens[1].trim().toLowerCase();
+    // STATS [ON|OFF|RESET]; without an option prints the collected metrics.
+    private void handleStats(String[] tokens) {
+        String option = tokens.length > 1 ? tokens[1].toUpperCase() : "";
+        ExecutionMetrics metrics = fsm.metrics();
+        String result;
+        switch (option) {
+            case "ON":
+                fsm.enableMetrics();
+                result = "Metrics enabled.";
+                break;
+            case "OFF":
+                fsm.disableMetrics();
+                result = "Metrics disabled.";
+                break;
+            case "RESET":
+                if (metrics != null) {
+                    metrics.reset();
+                }
+                result = metrics != null ? "Metrics reset." : "Metrics are not enabled. Use STATS ON.";
+                break;
+            case "":
+                result = metrics != null ? metrics.getReport() : "Metrics are not enabled. Use STATS ON.";
+                break;
+            default:
+                result = "Error: Unknown STATS option '" + tokens[1] + "'. Use ON, OFF or RESET.";
+                break;
+        }
+        System.out.println(result);
+        log(result);
+    }
 
-        // Binary dosyaları .ser veya .fs uzantılarına göre ayırt et
-        if (filename.endsWith(".ser") || filename.endsWith(".fs")) {
-            fsm.loadFromFile(filename);  // FSM içindeki ObjectInputStream ile okuma
-        } else {
-            try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-                StringBuilder commandBuffer = new StringBuilder();
-                String line;
-                int lineNumber = 0;
-                while ((line = reader.readLine()) != null) {
-                    lineNumber++;
-                    line = line.trim();
-                    if (line.startsWith(";") || line.isEmpty()) {
-                        continue;
+    // CACHE [size|OFF|CLEAR]; without an option prints the cache counters.
+    private void handleCache(String[] tokens) {
+        String option = tokens.length > 1 ? tokens[1].toUpperCase() : "";
+        ResultCache cache = fsm.resultCache();
+        String result;
+        switch (option) {
+            case "OFF":
+                fsm.disableResultCache();
+                result = "Result cache disabled.";
+                break;
+            case "CLEAR":
+                if (cache != null) {
+                    cache.clear();
+                }
+                result = cache != null ? "Result cache cleared." : "Result cache is not enabled. Use CACHE <size>.";
+                break;
+            case "":
+                result = cache == null ? "Result cache is not enabled. Use CACHE <size>."
+                        : "Result cache: " + cache.size() + "/" + cache.capacity() + " entries, hits " + cache.hits()
+                        + ", misses " + cache.misses() + ", evictions " + cache.evictions()
+                        + ", invalidations " + cache.invalidations();
+                break;
+            default:
+                try {
+                    int capacity = Integer.parseInt(option);
+                    if (capacity <= 0) {
+                        throw new NumberFormatException();
                     }
-                    commandBuffer.append(line).append(" ");
-                    if (line.contains(";")) {
-                        String fullCommand = commandBuffer.toString();
-                        try {
-                            parse(fullCommand);
-                        } catch (Exception e) {
-                            System.out.println("Error processing command at line " + lineNumber + ": " + e.getMessage());
-                            log("Error processing command at line " + lineNumber + ": " + e.getMessage());
-                        }
-                        commandBuffer.setLength(0);
+                    result = "Result cache enabled for " + fsm.enableResultCache(capacity).capacity() + " inputs.";
+                } catch (NumberFormatException e) {
+                    result = "Error: Invalid CACHE option '" + tokens[1] + "'. Use a positive size, OFF or CLEAR.";
+                }
+                break;
+        }
+        System.out.println(result);
+        log(result);
+    }
+
+    // PREFIX-CACHE [characters|OFF|CLEAR]; without an option prints the prefix index counters.
+    private void handlePrefixCache(String[] tokens) {
+        String option = tokens.length > 1 ? tokens[1].toUpperCase() : "";
+        PrefixCache cache = fsm.prefixCache();
+        String result;
+        switch (option) {
+            case "OFF":
+                fsm.disablePrefixCache();
+                result = "Prefix cache disabled.";
+                break;
+            case "CLEAR":
+                if (cache != null) {
+                    cache.clear();
+                }
+                result = cache != null ? "Prefix cache cleared." : "Prefix cache is not enabled. Use PREFIX-CACHE <characters>.";
+                break;
+            case "":
+                result = cache == null ? "Prefix cache is not enabled. Use PREFIX-CACHE <characters>."
+                        : "Prefix cache: " + cache.size() + "/" + cache.capacity() + " characters in " + cache.nodes()
+                        + " nodes, hits " + cache.hits() + ", misses " + cache.misses() + ", characters skipped "
+                        + cache.skippedCharacters() + ", flushes " + cache.flushes();
+                break;
+            default:
+                try {
+                    long capacity = Long.parseLong(option);
+                    if (capacity <= 0) {
+                        throw new NumberFormatException();
+                    }
+                    result = "Prefix cache enabled for " + fsm.enablePrefixCache(capacity).capacity() + " characters.";
+                } catch (NumberFormatException e) {
+                    result = "Error: Invalid PREFIX-CACHE option '" + tokens[1] + "'. Use a positive size, OFF or CLEAR.";
+                }
+                break;
+        }
+        System.out.println(result);
+        log(result);
+    }
+
+    // SYMBOL-CLASSES [ON|OFF]; without an option shows how many classes the symbols currently run as.
+    private void handleSymbolClasses(String[] tokens) {
+        String option = tokens.length > 1 ? tokens[1].toUpperCase() : "";
+        String result;
+        switch (option) {
+            case "ON":
+                int classes = fsm.setSymbolClassesEnabled(true);
+                result = "Symbol classes enabled: " + fsm.getSymbols().size() + " symbols run as " + classes + " classes.";
+                break;
+            case "OFF":
+                fsm.setSymbolClassesEnabled(false);
+                result = "Symbol classes disabled.";
+                break;
+            case "":
+                result = fsm.isSymbolClassesEnabled()
+                        ? "Symbol classes: " + fsm.getSymbols().size() + " symbols run as " + fsm.compiled().classCount() + " classes."
+                        : "Symbol classes are not enabled. Use SYMBOL-CLASSES ON.";
+                break;
+            default:
+                result = "Error: Invalid SYMBOL-CLASSES option '" + tokens[1] + "'. Use ON or OFF.";
+                break;
+        }
+        System.out.println(result);
+        log(result);
+    }
+
+    // JOURNAL <directory> [commit interval ms] [compact bytes] | OFF | COMPACT | SYNC; without an option
+    // shows the journal state. Changes reach the disk within the commit interval, and at the latest on EXIT.
+    private void handleJournal(String[] tokens) {
+        String option = tokens.length > 1 ? tokens[1].toUpperCase() : "";
+        Journal journal = fsm.journal();
+        String result;
+        switch (option) {
+            case "OFF":
+                fsm.closeJournal();
+                result = journal != null ? "Journal closed." : "Journal is not enabled.";
+                break;
+            case "COMPACT":
+                if (journal == null) {
+                    result = "Journal is not enabled. Use JOURNAL <directory>.";
+                } else if (fsm.compactJournal()) {
+                    result = "Journal compacted into snapshot " + journal.generation() + ".";
+                } else {
+                    result = "Error: Journal compaction failed.";
+                }
+                break;
+            case "SYNC":
+                if (journal == null) {
+                    result = "Journal is not enabled. Use JOURNAL <directory>.";
+                    break;
+                }
+                try {
+                    journal.sync();
+                    result = "Journal synced: " + journal.durable() + " changes on disk.";
+                } catch (IOException e) {
+                    result = "Error: Could not sync journal. " + e.getMessage();
+                }
+                break;
+            case "":
+                result = journal == null ? "Journal is not enabled. Use JOURNAL <directory>."
+                        : "Journal: " + journal.directory() + ", snapshot " + journal.generation() + ", "
+                        + journal.journalBytes() + " bytes since it, changes " + journal.appended() + " (durable "
+                        + journal.durable() + ") in " + journal.commits() + " commits, compactions "
+                        + journal.compactions();
+                break;
+            default:
+                try {
+                    long interval = tokens.length > 2 ? Long.parseLong(tokens[2]) : 10;
+                    long compactBytes = tokens.length > 3 ? Long.parseLong(tokens[3]) : 4L << 20;
+                    if (interval < 0 || compactBytes <= 0) {
+                        throw new NumberFormatException();
                     }
+                    Journal opened = fsm.openJournal(Paths.get(tokens[1]), interval, compactBytes);
+                    result = opened.recovered()
+                            ? "Journal recovered from '" + tokens[1] + "': snapshot " + opened.generation() + " and "
+                            + opened.replayed() + " changes."
+                            : "Journal started in '" + tokens[1] + "'.";
+                } catch (NumberFormatException e) {
+                    result = "Error: Invalid JOURNAL options. Use JOURNAL <directory> [commit interval ms] [compact bytes].";
+                } catch (IOException e) {
+                    result = "Error: Could not open journal. " + e.getMessage();
                 }
+                break;
+        }
+        System.out.println(result);
+        log(result);
+    }
+
+    // DFA-CACHE [bytes]; sets or shows the cache budget used to run nondeterministic FSMs.
+    private void handleDfaCache(String[] tokens) {
+        Automaton current = fsm.automaton();
+        String result;
+        if (tokens.length > 1) {
+            try {
+                long budget = Long.parseLong(tokens[1]);
+                if (budget <= 0) {
+                    throw new NumberFormatException();
+                }
+                fsm.setLazyDfaBudget(budget);
+                result = "DFA cache budget set to " + budget + " bytes per thread.";
+            } catch (NumberFormatException e) {
+                result = "Error: Invalid DFA-CACHE budget '" + tokens[1] + "'.";
+            }
+        } else if (current instanceof LazyDfa) {
+            LazyDfa engine = (LazyDfa) current;
+            result = "DFA cache: budget " + engine.budget() + " bytes per thread, " + engine.statesBuilt()
+                    + " DFA states built, " + engine.flushes() + " flushes";
+        } else {
+            result = "FSM is deterministic; DFA cache budget is " + fsm.getLazyDfaBudget() + " bytes per thread.";
+        }
+        System.out.println(result);
+        log(result);
+    }
+
+    private void handleLoad(String[] tokens) {
+        if (tokens.length < 2) {
+            System.out.println("Error: No filename provided for load.");
+            log("Error: No filename provided for load.");
+            return;
+        }
+
+        load(tokens[1].trim());
+    }
+
+    // Loads a compiled machine, an image or a command script into the FSM, as LOAD does.
+    public void load(String filename) {
+        String extension = filename.toLowerCase();
+
+        // Binary dosyaları ve imajları başlıktaki magic number veya .ser/.fs uzantılarına göre ayırt et
+        if (BinaryFormat.isBinary(Paths.get(filename)) || MappedImage.isImage(Paths.get(filename)) || extension.endsWith(".ser") || extension.endsWith(".fs")) {
+            fsm.loadFromFile(filename);
+        } else {
+            try (Reader reader = new FileReader(filename, StandardCharsets.UTF_8)) {
+                parseScript(reader);
                 System.out.println("Load successful: Commands loaded from '" + filename + "'");
             } catch (IOException e) {
                 System.out.println("Error: Could not load commands from text file. " + e.getMessage());
             }
         }
-   }
+    }
 
     private void log(String message) {
         if (logger.isLogging()) {
@@ -0,0 +1,129 @@
+package fsm.core.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Splits a command script into commands without regular expressions or line copies.
+ * A command runs up to the next ';' and the rest of that line is ignored. Lines whose first
+ * non-blank character is ';' are comments. Tokens are separated by whitespace.
+ */
+public final class CommandTokenizer {
+    private static final String[] NO_TOKENS = new String[0];
+
+    private final Reader reader;
+    private final char[] buffer = new char[1 << 16];
+    private int position;
+    private int limit;
+    private char[] word = new char[64];
+    private final List<String> tokens = new ArrayList<>();
+    private int line = 1;
+    private int commandLine;
+
+    public CommandTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    // Returns the tokens of the next command, an empty array for an empty command, or null at the end of input.
+    // Text after the last ';' is not a complete command and is ignored.
+    public String[] nextCommand() throws IOException {
+        tokens.clear();
+        int length = 0;
+        boolean lineStart = true;
+        commandLine = -1;
+        int c;
+        while ((c = read()) >= 0) {
+            if (c == '\n') {
+                length = addToken(length);
+                line++;
+                lineStart = true;
+            } else if (c == ';') {
+                if (lineStart) {
+                    skipLine();                       // comment line, the pending command goes on
+                    continue;
+                }
+                addToken(length);
+                skipLine();
+                return tokens.toArray(NO_TOKENS);
+            } else if (isWhitespace(c)) {
+                length = addToken(length);
+            } else {
+                if (commandLine < 0) {
+                    commandLine = line;
+                }
+                if (length == word.length) {
+                    word = Arrays.copyOf(word, length * 2);
+                }
+                word[length++] = (char) c;
+                lineStart = false;
+            }
+        }
+        return null;
+    }
+
+    // Line number where the last returned command started.
+    public int line() {
+        return commandLine < 0 ? line : commandLine;
+    }
+
+    // Tokens of one command line, up to its first ';'.
+    public static String[] tokenize(CharSequence command) {
+        List<String> result = new ArrayList<>();
+        int start = -1;
+        int n = command.length();
+        for (int i = 0; i <= n; i++) {
+            char c = i < n ? command.charAt(i) : ';';
+            if (c == ';' || isWhitespace(c)) {
+                if (start >= 0) {
+                    result.add(command.subSequence(start, i).toString());
+                    start = -1;
+                }
+                if (c == ';') {
+                    break;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        return result.toArray(NO_TOKENS);
+    }
+
+    private int addToken(int length) {
+        if (length > 0) {
+            tokens.add(new String(word, 0, length));
+        }
+        return 0;
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = read()) >= 0) {
+            if (c == '\n') {
+                line++;
+                return;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            int count;
+            do {
+                count = reader.read(buffer, 0, buffer.length);
+            } while (count == 0);
+            if (count < 0) {
+                return -1;
+            }
+            position = 0;
+            limit = count;
+        }
+        return buffer[position++];
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f' || c == 0x0B;
+    }
+}
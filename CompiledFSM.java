@@ -0,0 +1,424 @@
+package fsm.core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Int-indexed view of an FSM: states and symbols are interned, transitions live in one flat table.
+ * Input characters are looked up in a 256-entry alphabet map with case folding baked in, so a run
+ * never builds strings. With symbol classes enabled, symbols whose transitions are identical from
+ * every state share one class, and runs use a table with one column per class instead of per symbol.
+ *
+ * Compiling also finds the states that decide a run early: dead states, from which no final state can
+ * be reached, and absorbing states, which are final and from which every symbol leads to another
+ * absorbing state. Once a run is in one of them the rest of the input only matters for absorbing
+ * states, and only in that it must consist of symbols.
+ */
+public final class CompiledFSM implements Automaton {
+    static final int ALPHABET_SIZE = 256;      // symbols are Latin-1 characters
+    private static final short INVALID = -1;
+    private static final byte LIVE = 0;
+    private static final byte DEAD = 1;
+    private static final byte ABSORBING = 2;
+    private static final int DECIDE_INTERVAL = 16;     // steps between checks; runs stay in decided states
+
+    private final String[] states;
+    private final String[] symbols;
+    private final Map<String, Integer> stateIndex = new HashMap<>();
+    private final short[] symbolOf;    // char -> symbol index, INVALID if the char is not a declared symbol
+    private final int[] next;          // state * symbolCount + symbol -> next state, -1 if undefined
+    private final short[] classOf;     // char -> symbol class, INVALID if not a symbol; symbolOf unless merged
+    private final int[] classNext;     // state * classCount + class -> next state; next unless merged
+    private final int classCount;
+    private final BitSet finals;
+    private final int initial;
+    private final byte[] fate;         // state -> LIVE, DEAD or ABSORBING
+    private final int deadCount;
+    private final int absorbingCount;
+
+    CompiledFSM(Collection<String> states, Collection<String> symbols, Collection<String> finalStates,
+                Collection<Transition> transitions, String initialState, boolean mergeSymbols) {
+        this.states = states.toArray(new String[0]);
+        this.symbols = symbols.toArray(new String[0]);
+
+        for (int i = 0; i < this.states.length; i++) {
+            stateIndex.put(this.states[i], i);
+        }
+        Map<String, Integer> symbolIndex = new HashMap<>();
+        for (int i = 0; i < this.symbols.length; i++) {
+            symbolIndex.put(this.symbols[i], i);
+        }
+
+        symbolOf = new short[ALPHABET_SIZE];
+        for (char c = 0; c < ALPHABET_SIZE; c++) {
+            Integer index = symbolIndex.get(String.valueOf(Character.toUpperCase(c)));
+            symbolOf[c] = index == null ? INVALID : index.shortValue();
+        }
+
+        next = new int[this.states.length * this.symbols.length];
+        Arrays.fill(next, -1);
+        for (Transition t : transitions) {
+            int from = stateIndex.get(t.getCurrentState());
+            int symbol = symbolIndex.get(t.getSymbol());
+            next[from * this.symbols.length + symbol] = stateIndex.get(t.getNextState());
+        }
+
+        finals = new BitSet(this.states.length);
+        for (String state : finalStates) {
+            finals.set(stateIndex.get(state));
+        }
+
+        Integer init = initialState == null ? null : stateIndex.get(initialState);
+        initial = init == null ? -1 : init;
+
+        int[] classOfSymbol = mergeSymbols ? mergeColumns() : null;
+        if (classOfSymbol == null) {
+            classOf = symbolOf;
+            classNext = next;
+            classCount = this.symbols.length;
+        } else {
+            int count = 0;
+            for (int c : classOfSymbol) {
+                count = Math.max(count, c + 1);
+            }
+            classCount = count;
+            classOf = new short[ALPHABET_SIZE];
+            for (int ch = 0; ch < ALPHABET_SIZE; ch++) {
+                classOf[ch] = symbolOf[ch] < 0 ? INVALID : (short) classOfSymbol[symbolOf[ch]];
+            }
+            classNext = new int[this.states.length * count];
+            for (int s = 0; s < this.states.length; s++) {
+                for (int c = 0; c < this.symbols.length; c++) {
+                    classNext[s * count + classOfSymbol[c]] = next[s * this.symbols.length + c];
+                }
+            }
+        }
+
+        fate = analyse();
+        deadCount = countFate(DEAD);
+        absorbingCount = countFate(ABSORBING);
+    }
+
+    // Dead states by reverse reachability from the final states; absorbing states as the largest set of
+    // final states in which every class has a transition that stays in the set. O(states * classes).
+    // Returns the fate of every state.
+    private byte[] analyse() {
+        int n = states.length;
+        int k = classCount;
+        int[] predStart = new int[n + 1];               // predecessors of t are pred[predStart[t] .. predStart[t + 1])
+        for (int target : classNext) {
+            if (target >= 0) {
+                predStart[target + 1]++;
+            }
+        }
+        for (int t = 0; t < n; t++) {
+            predStart[t + 1] += predStart[t];
+        }
+        int[] pred = new int[predStart[n]];
+        int[] fill = Arrays.copyOf(predStart, n);
+        for (int s = 0; s < n; s++) {
+            for (int c = 0; c < k; c++) {
+                int target = classNext[s * k + c];
+                if (target >= 0) {
+                    pred[fill[target]++] = s;
+                }
+            }
+        }
+
+        boolean[] reaches = new boolean[n];
+        int[] queue = new int[n];
+        int size = 0;
+        for (int s = finals.nextSetBit(0); s >= 0; s = finals.nextSetBit(s + 1)) {
+            reaches[s] = true;
+            queue[size++] = s;
+        }
+        for (int head = 0; head < size; head++) {
+            int t = queue[head];
+            for (int i = predStart[t]; i < predStart[t + 1]; i++) {
+                if (!reaches[pred[i]]) {
+                    reaches[pred[i]] = true;
+                    queue[size++] = pred[i];
+                }
+            }
+        }
+
+        // Start from the final states with a transition on every class and drop, transitively, every
+        // state with a transition to a dropped one.
+        boolean[] absorbing = new boolean[n];
+        size = 0;
+        for (int s = 0; s < n; s++) {
+            absorbing[s] = finals.get(s) && k > 0;
+            for (int c = 0; c < k && absorbing[s]; c++) {
+                absorbing[s] = classNext[s * k + c] >= 0;
+            }
+            if (!absorbing[s]) {
+                queue[size++] = s;
+            }
+        }
+        for (int head = 0; head < size; head++) {
+            int t = queue[head];
+            for (int i = predStart[t]; i < predStart[t + 1]; i++) {
+                if (absorbing[pred[i]]) {
+                    absorbing[pred[i]] = false;
+                    queue[size++] = pred[i];
+                }
+            }
+        }
+
+        byte[] fate = new byte[n];
+        for (int s = 0; s < n; s++) {
+            if (!reaches[s]) {
+                fate[s] = DEAD;
+            } else if (absorbing[s]) {
+                fate[s] = ABSORBING;
+            }
+        }
+        return fate;
+    }
+
+    private int countFate(byte kind) {
+        int count = 0;
+        for (byte f : fate) {
+            count += f == kind ? 1 : 0;
+        }
+        return count;
+    }
+
+    // Class of every symbol, numbered in order of first appearance; null if no two symbols can be merged.
+    private int[] mergeColumns() {
+        int n = states.length;
+        int k = symbols.length;
+        int[] classOfSymbol = new int[k];
+        int[] first = new int[k];          // class -> its first symbol
+        int[] hash = new int[k];
+        int classes = 0;
+        for (int c = 0; c < k; c++) {
+            int h = 1;
+            for (int s = 0; s < n; s++) {
+                h = 31 * h + next[s * k + c];
+            }
+            hash[c] = h;
+            int found = -1;
+            for (int j = 0; j < classes && found < 0; j++) {
+                if (hash[first[j]] == h && sameColumn(first[j], c)) {
+                    found = j;
+                }
+            }
+            if (found < 0) {
+                found = classes;
+                first[classes++] = c;
+            }
+            classOfSymbol[c] = found;
+        }
+        return classes < k ? classOfSymbol : null;
+    }
+
+    private boolean sameColumn(int a, int b) {
+        int k = symbols.length;
+        for (int s = 0; s < states.length; s++) {
+            if (next[s * k + a] != next[s * k + b]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int run(CharSequence input) {
+        int state = initial;
+        if (state < 0) {
+            return NO_INITIAL_STATE;
+        }
+        return run(state, input, 0, input.length());
+    }
+
+    @Override
+    public int run(int state, CharSequence input, int from, int to) {
+        int classes = classCount;
+        for (int i = from; i < to; i++) {
+            char ch = input.charAt(i);
+            int symbol = ch < ALPHABET_SIZE ? classOf[ch] : INVALID;
+            if (symbol < 0) {
+                return INVALID_SYMBOL;
+            }
+            state = classNext[state * classes + symbol];
+            if (state < 0) {
+                return NO_TRANSITION;
+            }
+        }
+        return state;
+    }
+
+    // Every byte is a Latin-1 character, so it indexes the alphabet map without decoding or a range check.
+    @Override
+    public int run(int state, ByteBuffer input, int from, int to) {
+        int classes = classCount;
+        for (int i = from; i < to; i++) {
+            int symbol = classOf[input.get(i) & 0xFF];
+            if (symbol < 0) {
+                return INVALID_SYMBOL;
+            }
+            state = classNext[state * classes + symbol];
+            if (state < 0) {
+                return NO_TRANSITION;
+            }
+        }
+        return state;
+    }
+
+    // Like run(), but returns once the outcome is decided, at most DECIDE_INTERVAL steps after the run
+    // entered a dead state, or an absorbing state if the rest of the input consists of symbols. The
+    // result then decides acceptance like the one run() returns, but it need not be the state the run
+    // ends in. Returns (characters stepped << 32) | result.
+    long runDecided(CharSequence input) {
+        int state = initial;
+        if (state < 0) {
+            return decided(0, NO_INITIAL_STATE);
+        }
+        int classes = classCount;
+        int length = input.length();
+        for (int i = 0; i < length; ) {
+            if (fate[state] != LIVE) {
+                return decided(i, fate[state] == DEAD || symbolsOnly(input, i, length) ? state : INVALID_SYMBOL);
+            }
+            for (int end = Math.min(length, i + DECIDE_INTERVAL); i < end; i++) {
+                char ch = input.charAt(i);
+                int symbol = ch < ALPHABET_SIZE ? classOf[ch] : INVALID;
+                if (symbol < 0) {
+                    return decided(i + 1, INVALID_SYMBOL);
+                }
+                state = classNext[state * classes + symbol];
+                if (state < 0) {
+                    return decided(i + 1, NO_TRANSITION);
+                }
+            }
+        }
+        return decided(length, state);
+    }
+
+    // The whole run through another engine over this table, such as the counting one of the metrics, so
+    // its counts and result are exact. Returns (characters read before the outcome was decided << 32) |
+    // result, with the input length in the high half when no dead or absorbing state decided it.
+    long runMarkingDecision(Automaton engine, CharSequence input) {
+        int state = engine.initialState();
+        if (state < 0) {
+            return decided(0, NO_INITIAL_STATE);
+        }
+        int length = input.length();
+        int decidedAt = length;
+        byte decidedBy = LIVE;
+        for (int i = 0; i < length; i++) {
+            if (decidedBy == LIVE && fate[state] != LIVE) {
+                decidedBy = fate[state];
+                decidedAt = i;
+            }
+            int symbol = engine.symbolIndex(input.charAt(i));
+            if (symbol < 0) {       // an absorbing state only decided the outcome if no such symbol follows
+                return decided(decidedBy == DEAD ? decidedAt : length, INVALID_SYMBOL);
+            }
+            state = engine.next(state, symbol);
+            if (state < 0) {        // only dead states lack transitions once the outcome is decided
+                return decided(decidedAt, NO_TRANSITION);
+            }
+        }
+        return decided(decidedAt, state);
+    }
+
+    private static long decided(int stepped, int result) {
+        return (long) stepped << 32 | (result & 0xFFFFFFFFL);
+    }
+
+    // The checks in the loop are a byte load each, independent of the table lookups they replace.
+    private boolean symbolsOnly(CharSequence input, int from, int to) {
+        int invalid = 0;
+        for (int i = from; i < to; i++) {
+            char ch = input.charAt(i);
+            invalid |= ch < ALPHABET_SIZE ? classOf[ch] : INVALID;
+        }
+        return invalid >= 0;
+    }
+
+    // Whether runDecided can stop before the end of an input: some state is dead or absorbing.
+    boolean hasDecidingStates() {
+        return deadCount + absorbingCount > 0;
+    }
+
+    public boolean isDead(int state) {
+        return fate[state] == DEAD;
+    }
+
+    public boolean isAbsorbing(int state) {
+        return fate[state] == ABSORBING;
+    }
+
+    public int deadStateCount() {
+        return deadCount;
+    }
+
+    public int absorbingStateCount() {
+        return absorbingCount;
+    }
+
+    @Override
+    public int initialState() {
+        return initial;
+    }
+
+    public int stateIndex(String state) {
+        Integer index = stateIndex.get(state);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public int symbolIndex(char ch) {
+        return ch < ALPHABET_SIZE ? symbolOf[ch] : INVALID;
+    }
+
+    // Columns of the table runs use: the symbol count, or fewer when symbol classes are merged.
+    public int classCount() {
+        return classCount;
+    }
+
+    // Symbol class of an input character, or -1 if it is not a symbol.
+    int classIndex(char ch) {
+        return ch < ALPHABET_SIZE ? classOf[ch] : INVALID;
+    }
+
+    int nextInClass(int state, int symbolClass) {
+        return classNext[state * classCount + symbolClass];
+    }
+
+    @Override
+    public int next(int state, int symbol) {
+        return next[state * symbols.length + symbol];
+    }
+
+    @Override
+    public boolean isFinal(int state) {
+        return finals.get(state);
+    }
+
+    @Override
+    public String stateName(int state) {
+        return states[state];
+    }
+
+    @Override
+    public String symbolName(int symbol) {
+        return symbols[symbol];
+    }
+
+    @Override
+    public int stateCount() {
+        return states.length;
+    }
+
+    @Override
+    public int symbolCount() {
+        return symbols.length;
+    }
+}
@@ -0,0 +1,28 @@
+package fsm.core;
+
+// Prints the trace to stdout, in the format EXECUTE has always used.
+public final class ConsoleTraceSink implements TraceSink {
+    public static final ConsoleTraceSink INSTANCE = new ConsoleTraceSink();
+
+    private ConsoleTraceSink() {}
+
+    @Override
+    public void state(String state) {
+        System.out.print(state + " ");
+    }
+
+    @Override
+    public void invalidSymbol(char symbol) {
+        System.out.println("\nError: Invalid symbol '" + String.valueOf(symbol).toUpperCase() + "' encountered.");
+    }
+
+    @Override
+    public void noTransition(String state, String symbol) {
+        System.out.println("\nNo valid transition from state '" + state + "' using symbol '" + symbol + "'.");
+    }
+
+    @Override
+    public void result(boolean accepted) {
+        System.out.println(accepted ? "\nYES" : "\nNO");
+    }
+}
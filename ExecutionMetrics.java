@@ -0,0 +1,309 @@
+package fsm.core;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Opt-in execution metrics of one FSM: outcome counts, a latency histogram and how often every state
+ * is entered and every transition is taken. All counters are striped LongAdders so concurrent
+ * executions do not contend. Per-state and per-transition counters belong to one compiled definition
+ * and start over when the definition changes; the totals are kept until reset().
+ */
+public final class ExecutionMetrics implements ExecutionMetricsMBean {
+    private static final int HOT_LIMIT = 10;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder invalidSymbol = new LongAdder();
+    private final LongAdder noTransition = new LongAdder();
+    private final LongAdder noInitialState = new LongAdder();
+    private final LongAdder characters = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private volatile CountingAutomaton heat;
+    private ObjectName name;
+
+    ExecutionMetrics() {}
+
+    // Engine that counts visits while it runs; cached until the FSM publishes a different engine.
+    // Lazy engines have no fixed state indexes, so only their totals are counted.
+    Automaton instrument(Automaton engine) {
+        if (engine.isLazy()) {
+            return engine;
+        }
+        CountingAutomaton current = heat;
+        if (current != null && current.engine == engine) {
+            return current;
+        }
+        synchronized (this) {
+            current = heat;
+            if (current == null || current.engine != engine) {
+                current = new CountingAutomaton(engine);
+                heat = current;
+            }
+            return current;
+        }
+    }
+
+    void record(Automaton engine, int result, int length, long nanos) {
+        if (result >= 0) {
+            (engine.isFinal(result) ? accepted : rejected).increment();
+        } else if (result == Automaton.INVALID_SYMBOL) {
+            invalidSymbol.increment();
+        } else if (result == Automaton.NO_TRANSITION) {
+            noTransition.increment();
+        } else {
+            noInitialState.increment();
+        }
+        characters.add(length);
+        latency.record(nanos);
+    }
+
+    // Characters after a dead or absorbing state had decided a run's outcome. Runs with metrics on still
+    // read them to keep the counts exact; quiet runs without metrics skip them.
+    void skipped(long count) {
+        skipped.add(count);
+    }
+
+    @Override
+    public long getExecutions() {
+        return getAccepted() + getRejected() + getInvalidSymbol() + getNoTransition() + getNoInitialState();
+    }
+
+    @Override
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getInvalidSymbol() {
+        return invalidSymbol.sum();
+    }
+
+    @Override
+    public long getNoTransition() {
+        return noTransition.sum();
+    }
+
+    @Override
+    public long getNoInitialState() {
+        return noInitialState.sum();
+    }
+
+    @Override
+    public long getCharacters() {
+        return characters.sum();
+    }
+
+    @Override
+    public long getCharactersSkipped() {
+        return skipped.sum();
+    }
+
+    @Override
+    public double getLatencyP50Micros() {
+        return latency.percentile(50) / 1e3;
+    }
+
+    @Override
+    public double getLatencyP99Micros() {
+        return latency.percentile(99) / 1e3;
+    }
+
+    @Override
+    public double getLatencyP999Micros() {
+        return latency.percentile(99.9) / 1e3;
+    }
+
+    @Override
+    public double getLatencyMaxMicros() {
+        return latency.max() / 1e3;
+    }
+
+    @Override
+    public synchronized void reset() {
+        accepted.reset();
+        rejected.reset();
+        invalidSymbol.reset();
+        noTransition.reset();
+        noInitialState.reset();
+        characters.reset();
+        skipped.reset();
+        latency.reset();
+        heat = null;
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("Executions: ").append(getExecutions())
+                .append(" (accepted ").append(getAccepted())
+                .append(", rejected ").append(getRejected())
+                .append(", invalid symbol ").append(getInvalidSymbol())
+                .append(", no transition ").append(getNoTransition())
+                .append(", no initial state ").append(getNoInitialState()).append(")\n");
+        report.append("Characters: ").append(getCharacters())
+                .append(" (after the outcome was decided ").append(getCharactersSkipped()).append(")\n");
+        report.append(String.format("Latency (us): p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f",
+                getLatencyP50Micros(), getLatencyP99Micros(), getLatencyP999Micros(), getLatencyMaxMicros()));
+
+        CountingAutomaton current = heat;
+        if (current != null) {
+            Automaton engine = current.engine;
+            report.append("\nHot states:");
+            PriorityQueue<long[]> top = new PriorityQueue<>((a, b) -> Long.compare(a[1], b[1]));
+            offer(top, current.states, 0);
+            for (long[] entry : hottest(top)) {
+                report.append(' ').append(engine.stateName((int) entry[0])).append('=').append(entry[1]);
+            }
+            report.append("\nHot transitions:");
+            int symbols = engine.symbolCount();
+            top.clear();
+            for (int state = 0; state < current.transitions.length(); state++) {
+                AtomicReferenceArray<LongAdder> row = current.transitions.get(state);
+                if (row != null) {
+                    offer(top, row, (long) state * symbols);
+                }
+            }
+            for (long[] entry : hottest(top)) {
+                int state = (int) (entry[0] / symbols);
+                int symbol = (int) (entry[0] % symbols);
+                report.append("\n  ").append(engine.symbolName(symbol)).append(' ').append(engine.stateName(state))
+                        .append(" -> ").append(engine.stateName(engine.next(state, symbol))).append(": ").append(entry[1]);
+            }
+        }
+        return report.toString();
+    }
+
+    // Keeps the HOT_LIMIT most used of the counters in top as {base + index, count}.
+    private static void offer(PriorityQueue<long[]> top, AtomicReferenceArray<LongAdder> counters, long base) {
+        for (int i = 0; i < counters.length(); i++) {
+            LongAdder counter = counters.get(i);
+            if (counter != null) {
+                top.add(new long[] {base + i, counter.sum()});
+                if (top.size() > HOT_LIMIT) {
+                    top.poll();
+                }
+            }
+        }
+    }
+
+    // Empties top into {index, count} entries, highest count first.
+    private static long[][] hottest(PriorityQueue<long[]> top) {
+        long[][] result = new long[top.size()][];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = top.poll();
+        }
+        return result;
+    }
+
+    synchronized void register(Object owner) {
+        try {
+            name = new ObjectName("fsm.core:type=ExecutionMetrics,id=" + Integer.toHexString(System.identityHashCode(owner)));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (JMException e) {
+            name = null;
+            System.out.println("Warning: Could not register metrics MBean. " + e.getMessage());
+        }
+    }
+
+    synchronized void unregister() {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            // already gone
+        }
+        name = null;
+    }
+
+    // Counters are created on first use, and a state's row of transition counters the first time the
+    // state is left, so large machines only pay for the states and transitions that actually run.
+    private static final class CountingAutomaton implements Automaton {
+        final Automaton engine;
+        final AtomicReferenceArray<LongAdder> states;
+        final AtomicReferenceArray<AtomicReferenceArray<LongAdder>> transitions;    // state -> symbol -> counter
+        private final int symbolCount;
+
+        CountingAutomaton(Automaton engine) {
+            this.engine = engine;
+            this.symbolCount = engine.symbolCount();
+            states = new AtomicReferenceArray<>(engine.stateCount());
+            transitions = new AtomicReferenceArray<>(engine.stateCount());
+        }
+
+        @Override
+        public int initialState() {
+            int state = engine.initialState();
+            if (state >= 0) {
+                increment(states, state);
+            }
+            return state;
+        }
+
+        @Override
+        public int next(int state, int symbol) {
+            int target = engine.next(state, symbol);
+            if (target >= 0) {
+                AtomicReferenceArray<LongAdder> row = transitions.get(state);
+                if (row == null) {
+                    transitions.compareAndSet(state, null, new AtomicReferenceArray<>(symbolCount));
+                    row = transitions.get(state);
+                }
+                increment(row, symbol);
+                increment(states, target);
+            }
+            return target;
+        }
+
+        private static void increment(AtomicReferenceArray<LongAdder> counters, int index) {
+            LongAdder counter = counters.get(index);
+            if (counter == null) {
+                counters.compareAndSet(index, null, new LongAdder());
+                counter = counters.get(index);
+            }
+            counter.increment();
+        }
+
+        @Override
+        public int symbolIndex(char ch) {
+            return engine.symbolIndex(ch);
+        }
+
+        @Override
+        public boolean isFinal(int state) {
+            return engine.isFinal(state);
+        }
+
+        @Override
+        public String stateName(int state) {
+            return engine.stateName(state);
+        }
+
+        @Override
+        public String symbolName(int symbol) {
+            return engine.symbolName(symbol);
+        }
+
+        @Override
+        public int stateCount() {
+            return engine.stateCount();
+        }
+
+        @Override
+        public int symbolCount() {
+            return symbolCount;
+        }
+    }
+}
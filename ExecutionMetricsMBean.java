@@ -0,0 +1,32 @@
+package fsm.core;
+
+// JMX view of ExecutionMetrics, registered as fsm.core:type=ExecutionMetrics while STATS is on.
+public interface ExecutionMetricsMBean {
+    long getExecutions();
+
+    long getAccepted();
+
+    long getRejected();
+
+    long getInvalidSymbol();
+
+    long getNoTransition();
+
+    long getNoInitialState();
+
+    long getCharacters();
+
+    long getCharactersSkipped();
+
+    double getLatencyP50Micros();
+
+    double getLatencyP99Micros();
+
+    double getLatencyP999Micros();
+
+    double getLatencyMaxMicros();
+
+    String getReport();
+
+    void reset();
+}
@@ -0,0 +1,131 @@
+package fsm.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ForkJoinPool;
+
+// Incremental execution: input is fed piece by piece and only the current state is kept.
+public final class ExecutionSession {
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final long MAP_WINDOW = 1L << 28;
+
+    private final Automaton automaton;
+    private int state;          // current state index, or a negative Automaton result code once the input failed
+    private long consumed;      // characters read so far, skipped line breaks included
+    private boolean skipLineBreaks;
+    private boolean parallel;
+    private ParallelExecutor executor;      // created on the first chunk large enough to split
+
+    ExecutionSession(Automaton automaton) {
+        this.automaton = automaton;
+        reset();
+    }
+
+    // Ignore '\r' and '\n' in the input, so line-broken text files can be fed as one input.
+    public ExecutionSession skipLineBreaks() {
+        skipLineBreaks = true;
+        return this;
+    }
+
+    // Evaluate large chunks (ParallelExecutor.MIN_PARALLEL_LENGTH and up) on all cores.
+    public ExecutionSession parallel() {
+        parallel = true;
+        return this;
+    }
+
+    public void reset() {
+        int initial = automaton.initialState();
+        state = initial < 0 ? Automaton.NO_INITIAL_STATE : initial;
+        consumed = 0;
+    }
+
+    public void feed(char ch) {
+        if (state < 0) {
+            return;
+        }
+        if (skipLineBreaks && (ch == '\n' || ch == '\r')) {
+            consumed++;
+            return;
+        }
+        int symbol = automaton.symbolIndex(ch);
+        if (symbol < 0) {
+            state = Automaton.INVALID_SYMBOL;
+            return;
+        }
+        int target = automaton.next(state, symbol);
+        if (target < 0) {
+            state = Automaton.NO_TRANSITION;
+            return;
+        }
+        state = target;
+        consumed++;
+    }
+
+    public void feed(CharSequence chars) {
+        if (parallel && state >= 0 && chars.length() >= ParallelExecutor.MIN_PARALLEL_LENGTH) {
+            feedParallel(chars);
+            return;
+        }
+        for (int i = 0, n = chars.length(); i < n && state >= 0; i++) {
+            feed(chars.charAt(i));
+        }
+    }
+
+    // Feeds the remaining bytes as ISO-8859-1 characters and consumes the buffer.
+    public void feed(ByteBuffer bytes) {
+        if (parallel && state >= 0 && bytes.remaining() >= ParallelExecutor.MIN_PARALLEL_LENGTH) {
+            feedParallel(new ByteChars(bytes));
+            bytes.position(bytes.limit());
+            return;
+        }
+        for (int i = bytes.position(), n = bytes.limit(); i < n && state >= 0; i++) {
+            feed((char) (bytes.get(i) & 0xFF));
+        }
+        bytes.position(bytes.limit());
+    }
+
+    // Reads the channel to its end, or until the outcome can no longer change.
+    public void feed(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        while (state >= 0 && channel.read(buffer) >= 0) {
+            buffer.flip();
+            feed(buffer);
+            buffer.clear();
+        }
+    }
+
+    // Maps the file window by window instead of copying it through a buffer.
+    public void feedMapped(FileChannel file) throws IOException {
+        for (long at = file.position(), size = file.size(); at < size && state >= 0; at += MAP_WINDOW) {
+            feed(file.map(FileChannel.MapMode.READ_ONLY, at, Math.min(MAP_WINDOW, size - at)));
+        }
+    }
+
+    private void feedParallel(CharSequence chars) {
+        if (executor == null) {
+            executor = new ParallelExecutor(automaton, ForkJoinPool.commonPool(), skipLineBreaks);
+        }
+        int[] failedAt = new int[1];
+        state = executor.run(state, chars, failedAt);
+        consumed += state >= 0 ? chars.length() : failedAt[0];
+    }
+
+    public boolean isAccepting() {
+        return automaton.accepts(state);
+    }
+
+    // State index, or a negative Automaton result code if the input already failed.
+    public int currentState() {
+        return state;
+    }
+
+    public String currentStateName() {
+        return state >= 0 ? automaton.stateName(state) : null;
+    }
+
+    public long consumed() {
+        return consumed;
+    }
+}
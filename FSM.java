@@ -1,67 +1,110 @@
 package fsm.core;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;            
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class FSM implements Serializable {
-    private static final long serialVersionUID = 1L;
-
-    private final List<String> symbols = new ArrayList<>();
-    private final List<String> states = new ArrayList<>();
-    private final List<String> finalStates = new ArrayList<>();
-    private final List<Transition> transitions = new ArrayList<>();
+    private static final long serialVersionUID = 2L;
+    public static final int JIT_MAX_STATES = JitCompiler.MAX_STATES;
+
+    // Insertion-ordered so PRINT and printToFile keep declaration order.
+    private final Set<String> symbols = new LinkedHashSet<>();
+    private final Set<String> states = new LinkedHashSet<>();
+    private final Set<String> finalStates = new LinkedHashSet<>();
+    private final Map<String, Transition> transitions = new LinkedHashMap<>();   // key: symbol + " " + currentState
+    // Further targets of pairs that already have one, and EPSILON moves; key: symbol + " " + currentState, then
+    // nextState, so redefining a pair drops all its targets at once. Any entry here makes the FSM nondeterministic.
+    private final Map<String, Map<String, Transition>> alternatives = new LinkedHashMap<>();
     private String initialState = null;
+    private transient MappedImage image;             // set while the definition lives only in a mapped image
+
+    // Every mutation runs under the FSM's lock and bumps the version; executions pin an immutable
+    // snapshot through a volatile read and only take the lock when the snapshot is out of date.
+    private transient volatile long version;
+    private transient volatile FsmSnapshot snapshot;
+    private transient volatile boolean updating;     // readers keep the old snapshot while update() runs
+    private transient volatile long stableVersion;   // version when the running update() began
+    private transient FsmSnapshot working;           // the updating thread's own snapshot; never published
+    private transient boolean jit;                   // generate bytecode executors for small machines
+    private transient boolean symbolClasses;         // merge symbols with identical transitions when compiling
+    private transient long lazyDfaBudget = LazyDfa.DEFAULT_BUDGET;
+    private transient volatile ExecutionMetrics metrics;   // null unless STATS is on
+    private transient volatile ResultCache cache;          // null unless CACHE is on
+    private transient volatile PrefixCache prefixes;       // null unless PREFIX-CACHE is on
+    private transient volatile Journal journal;            // null unless JOURNAL is on
 
     public FSM() {}
 
-    public void clear() {
+    public synchronized void clear() {
+        reset();
+        changed();
+        journal(Journal.CLEAR);
+    }
+
+    private void reset() {
         symbols.clear();
         states.clear();
         finalStates.clear();
         transitions.clear();
+        alternatives.clear();
         initialState = null;
+        image = null;
     }
 
-    public void addSymbol(String symbol) {
+    public synchronized void addSymbol(String symbol) {
+        materialize();
         if (symbol == null || symbol.isEmpty()) {
             System.out.println("Error: Symbol cannot be null or empty.");
             return;
         }
         symbol = symbol.toUpperCase();
-        if (!symbol.matches("[A-Z0-9]")) {
-            System.out.println("Error: Symbol '" + symbol + "' is not alphanumeric and ignored.");
+        if (symbol.length() != 1 || !isSymbolCharacter(symbol.charAt(0))) {
+            System.out.println("Error: Symbol '" + symbol + "' is not a single printable Latin-1 character and ignored.");
             return;
         }
-        if (symbols.contains(symbol)) {
+        if (!symbols.add(symbol)) {
             System.out.println("Warning: Symbol '" + symbol + "' was already declared.");
         } else {
-            symbols.add(symbol);
+            changed();
+            journal(Journal.SYMBOL, symbol);
         }
     }
 
-    public void addState(String state) {
+    public synchronized void addState(String state) {
+        materialize();
         if (state == null || state.isEmpty()) {
             System.out.println("Error: State cannot be null or empty.");
             return;
         }
         state = state.toUpperCase();
-        if (!state.matches("[A-Z0-9]+")) {
+        if (!isAlphanumeric(state)) {
             System.out.println("Error: State '" + state + "' is not alphanumeric and ignored.");
             return;
         }
-        if (states.contains(state)) {
+        if (!states.add(state)) {
             System.out.println("Warning: State '" + state + "' was already declared.");
         } else {
-            states.add(state);
             if (initialState == null) {
                 initialState = state;
             }
+            changed();
+            journal(Journal.STATE, state);
         }
     }
 
-    public void setInitialState(String state) {
+    public synchronized void setInitialState(String state) {
+        materialize();
         if (state == null || state.isEmpty()) {
             System.out.println("Error: No initial state specified.");
             return;
@@ -72,9 +115,12 @@ public class FSM implements Serializable {
             states.add(state);
         }
         initialState = state;
+        changed();
+        journal(Journal.INITIAL, state);
     }
 
-    public void addFinalState(String state) {
+    public synchronized void addFinalState(String state) {
+        materialize();
         if (state == null || state.isEmpty()) {
             System.out.println("Error: No final state specified.");
             return;
@@ -84,96 +130,515 @@ public class FSM implements Serializable {
             System.out.println("Warning: State '" + state + "' was not previously declared. Adding it now.");
             states.add(state);
         }
-        if (finalStates.contains(state)) {
+        if (!finalStates.add(state)) {
             System.out.println("Warning: State '" + state + "' was already declared as a final state.");
         } else {
-            finalStates.add(state);
+            changed();
+            journal(Journal.FINAL, state);
         }
     }
 
-    public void addTransition(String symbol, String currentState, String nextState) {
-        if (symbol == null || currentState == null || nextState == null) {
-            System.out.println("Error: Symbol and states must not be null.");
+    public synchronized void addTransition(String symbol, String currentState, String nextState) {
+        materialize();
+        if (!isValidTransition(symbol, currentState, nextState)) {
             return;
         }
         symbol = symbol.toUpperCase();
         currentState = currentState.toUpperCase();
         nextState = nextState.toUpperCase();
-
-        if (!symbols.contains(symbol)) {
-            System.out.println("Error: Invalid symbol '" + symbol + "'. It was not previously declared.");
+        if (symbol.equals(Transition.EPSILON)) {
+            if (addAlternative(new Transition(symbol, currentState, nextState))) {
+                journal(Journal.TRANSITION, symbol, currentState, nextState);
+            }
             return;
         }
-        if (!states.contains(currentState)) {
-            System.out.println("Error: Invalid current state '" + currentState + "'. It was not previously declared.");
+
+        // A redefined (symbol, state) pair replaces the old transition, and any further targets, and moves to the end.
+        String key = transitionKey(symbol, currentState);
+        transitions.remove(key);
+        alternatives.remove(key);
+        transitions.put(key, new Transition(symbol, currentState, nextState));
+        changed();
+        journal(Journal.TRANSITION, symbol, currentState, nextState);
+    }
+
+    // Adds nextState as one more target of (symbol, currentState) instead of replacing the existing one.
+    public synchronized void addTransitionTarget(String symbol, String currentState, String nextState) {
+        materialize();
+        if (!isValidTransition(symbol, currentState, nextState)) {
             return;
         }
-        if (!states.contains(nextState)) {
-            System.out.println("Error: Invalid next state '" + nextState + "'. It was not previously declared.");
+        Transition t = new Transition(symbol, currentState, nextState);
+        if (!t.isEpsilon() && !transitions.containsKey(transitionKey(t.getSymbol(), t.getCurrentState()))) {
+            transitions.put(transitionKey(t.getSymbol(), t.getCurrentState()), t);
+        } else if (!addAlternative(t)) {
             return;
         }
+        changed();
+        journal(Journal.TARGET, t.getSymbol(), t.getCurrentState(), t.getNextState());
+    }
+
+    // Returns false if the transition was already there.
+    private boolean addAlternative(Transition t) {
+        String key = transitionKey(t.getSymbol(), t.getCurrentState());
+        Transition existing = transitions.get(key);
+        if (existing != null && existing.getNextState().equals(t.getNextState())) {
+            return false;
+        }
+        if (alternatives.computeIfAbsent(key, k -> new LinkedHashMap<>()).putIfAbsent(t.getNextState(), t) == null) {
+            changed();
+            return true;
+        }
+        return false;
+    }
 
-        // Eğer aynı symbol ve currentState varsa öncekini kaldır
-        String finalSymbol = symbol;
-        String finalCurrentState = currentState;
-        for (int i = 0; i < transitions.size(); i++) {
-            Transition t = transitions.get(i);
-            if (t.getSymbol().equals(finalSymbol) && t.getCurrentState().equals(finalCurrentState)) {
-                transitions.remove(i);
-                i--; // dikkat: eleman silindiği için indeksi geri alıyoruz!
-            }
+    private boolean isValidTransition(String symbol, String currentState, String nextState) {
+        if (symbol == null || currentState == null || nextState == null) {
+            System.out.println("Error: Symbol and states must not be null.");
+            return false;
         }
+        symbol = symbol.toUpperCase();
+        if (!symbol.equals(Transition.EPSILON) && !symbols.contains(symbol)) {
+            System.out.println("Error: Invalid symbol '" + symbol + "'. It was not previously declared.");
+            return false;
+        }
+        if (!states.contains(currentState.toUpperCase())) {
+            System.out.println("Error: Invalid current state '" + currentState.toUpperCase() + "'. It was not previously declared.");
+            return false;
+        }
+        if (!states.contains(nextState.toUpperCase())) {
+            System.out.println("Error: Invalid next state '" + nextState.toUpperCase() + "'. It was not previously declared.");
+            return false;
+        }
+        return true;
+    }
 
-        transitions.add(new Transition(symbol, currentState, nextState));
+    // True when no pair has more than one target and there are no EPSILON moves.
+    public synchronized boolean isDeterministic() {
+        materialize();
+        return alternatives.isEmpty();
     }
-    
+
     public String execute(String input) {
-        if (initialState == null) {
+        return execute(input, ConsoleTraceSink.INSTANCE) ? "YES" : "NO";
+    }
+
+    private static String transitionKey(String symbol, String state) {
+        return symbol + " " + state;
+    }
+
+    // The further targets and EPSILON moves, pair by pair.
+    private List<Transition> alternativeTransitions() {
+        List<Transition> all = new ArrayList<>();
+        for (Map<String, Transition> targets : alternatives.values()) {
+            all.addAll(targets.values());
+        }
+        return all;
+    }
+
+    public boolean execute(CharSequence input, TraceSink sink) {
+        Automaton engine = automaton();
+        if (engine.initialState() < 0) {
             System.out.println("Error: Initial state is not set.");
-            return "NO";
+            return false;
         }
         if (input == null) {
             System.out.println("Error: Input cannot be null.");
-            return "NO";
+            return false;
+        }
+        ExecutionMetrics counters = metrics;
+        if (counters == null) {
+            return engine.accepts(engine.trace(input, sink));
         }
+        long start = System.nanoTime();
+        int result = counters.instrument(engine).trace(input, sink);
+        counters.record(engine, result, input.length(), System.nanoTime() - start);
+        return engine.accepts(result);
+    }
 
-        String currentState = initialState;
-        System.out.print(currentState + " ");
+    // Quiet execution: returns the final state index, or one of the negative Automaton result codes.
+    public int run(CharSequence input) {
+        if (input == null) {
+            return Automaton.INVALID_SYMBOL;
+        }
+        return run(snapshot(), input);
+    }
+
+    private int run(FsmSnapshot current, CharSequence input) {
+        Automaton engine = current.automaton();
+        if (engine.isLazy()) {              // its state indexes cannot be cached
+            ExecutionMetrics counters = metrics;
+            if (counters == null) {
+                return engine.run(input);
+            }
+            long start = System.nanoTime();
+            int result = engine.run(input);
+            counters.record(engine, result, input.length(), System.nanoTime() - start);
+            return result;
+        }
+        ResultCache results = cache;
+        if (results != null) {
+            int cached = results.get(current.version(), input);
+            if (cached != ResultCache.MISS) {
+                return cached;              // cache hits are not counted as executions in the metrics
+            }
+        }
+        ExecutionMetrics counters = metrics;
+        int result;
+        PrefixCache prefixIndex = prefixes;
+        if (counters == null) {
+            result = prefixIndex == null ? engine.run(input) : prefixIndex.run(current.version(), engine, input);
+        } else {                            // metrics walk the whole input so per-state counts stay exact
+            long start = System.nanoTime();
+            result = counters.instrument(engine).run(input);
+            counters.record(engine, result, input.length(), System.nanoTime() - start);
+        }
+        if (results != null) {
+            results.put(current.version(), input, result);
+        }
+        return result;
+    }
 
-        for (char ch : input.toCharArray()) {
-            String symbol = String.valueOf(ch).toUpperCase();
+    // Starts collecting metrics for execute/run/accepts and registers them as an MBean. Idempotent.
+    public synchronized ExecutionMetrics enableMetrics() {
+        if (metrics == null) {
+            ExecutionMetrics created = new ExecutionMetrics();
+            created.register(this);
+            metrics = created;
+        }
+        return metrics;
+    }
 
-            if (!symbols.contains(symbol)) {
-                System.out.println("\nError: Invalid symbol '" + symbol + "' encountered.");
-                return "NO";
+    public synchronized void disableMetrics() {
+        if (metrics != null) {
+            metrics.unregister();
+            metrics = null;
+        }
+    }
+
+    // Current metrics, or null when they are disabled.
+    public ExecutionMetrics metrics() {
+        return metrics;
+    }
+
+    // Caches run/accepts results of up to capacity inputs; replaces an existing cache.
+    public synchronized ResultCache enableResultCache(int capacity) {
+        cache = new ResultCache(capacity);
+        return cache;
+    }
+
+    public synchronized void disableResultCache() {
+        cache = null;
+    }
+
+    // Current result cache, or null when caching is off.
+    public ResultCache resultCache() {
+        return cache;
+    }
+
+    // Lets run/accepts resume from the state of the longest cached input prefix; replaces an existing index.
+    public synchronized PrefixCache enablePrefixCache(long capacity) {
+        prefixes = new PrefixCache(capacity);
+        return prefixes;
+    }
+
+    public synchronized void disablePrefixCache() {
+        prefixes = null;
+    }
+
+    // Current prefix cache, or null when it is off.
+    public PrefixCache prefixCache() {
+        return prefixes;
+    }
+
+    public boolean accepts(CharSequence input) {
+        if (input == null) {
+            return false;
+        }
+        FsmSnapshot current = snapshot();
+        CompiledFSM table = current.table();
+        if (table == null || table != current.automaton() || !table.hasDecidingStates() || prefixes != null) {
+            return current.automaton().accepts(run(current, input));
+        }
+        return table.accepts(runDecided(current, table, input));
+    }
+
+    // Quiet execution that stops once the outcome is decided (see CompiledFSM.runDecided). The result of a
+    // run cut short is not cached, because run() has to return the state the input actually ends in.
+    // With metrics on the whole input is walked, like run() does, so outcome and per-state counts stay
+    // exact; the characters after the deciding state are counted as the ones a run without them skips.
+    private int runDecided(FsmSnapshot current, CompiledFSM table, CharSequence input) {
+        ResultCache results = cache;
+        if (results != null) {
+            int cached = results.get(current.version(), input);
+            if (cached != ResultCache.MISS) {
+                return cached;
             }
+        }
+        ExecutionMetrics counters = metrics;
+        long decided;
+        boolean complete;
+        if (counters == null) {
+            decided = table.runDecided(input);
+            complete = (int) (decided >>> 32) == input.length();
+        } else {
+            long start = System.nanoTime();
+            decided = table.runMarkingDecision(counters.instrument(table), input);
+            counters.record(table, (int) decided, input.length(), System.nanoTime() - start);
+            counters.skipped(input.length() - (int) (decided >>> 32));
+            complete = true;
+        }
+        int result = (int) decided;
+        if (results != null && complete) {
+            results.put(current.version(), input, result);
+        }
+        return result;
+    }
+
+    // Sessions keep using the engine they were opened on, even if the definition changes afterwards.
+    public ExecutionSession openSession() {
+        return new ExecutionSession(automaton());
+    }
+
+    // The engine executions run on: the mapped image if one is loaded, otherwise the compiled table.
+    public Automaton automaton() {
+        return snapshot().automaton();
+    }
+
+    public synchronized CompiledFSM compiled() {
+        materialize();
+        return publish().table();
+    }
+
+    // Current snapshot, without locking unless the definition changed since it was published. While
+    // update() runs, other threads keep the snapshot only if it is of the definition the update started
+    // from; an older one would miss committed changes, so they wait for the update and publish instead.
+    // The updating thread itself executes on a private snapshot of its half-applied changes.
+    public FsmSnapshot snapshot() {
+        FsmSnapshot current = snapshot;
+        if (current != null && (current.version() == version
+                || (updating && current.version() == stableVersion && !Thread.holdsLock(this)))) {
+            return used(current);
+        }
+        return used(publish());
+    }
+
+    private static FsmSnapshot used(FsmSnapshot current) {
+        if (!current.used) {                // written once, so executing threads do not share a dirty line
+            current.used = true;
+        }
+        return current;
+    }
 
-            boolean found = false;
-            for (Transition t : transitions) {
-                if (t.getSymbol().equals(symbol) && t.getCurrentState().equals(currentState)) {
-                    currentState = t.getNextState();
-                    System.out.print(currentState + " ");
-                    found = true;
-                    break;
+    // Builds a snapshot of the current definition, if needed, and swaps it in. Inside update() the
+    // snapshot stays private to the updating thread until the update is done.
+    public synchronized FsmSnapshot publish() {
+        FsmSnapshot current = updating ? working : snapshot;
+        if (current != null && current.version() == version) {
+            return current;
+        }
+        current = build();
+        if (updating) {
+            working = current;
+        } else {
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private FsmSnapshot build() {
+        if (image != null) {
+            return new FsmSnapshot(version, image, null);
+        }
+        CompiledFSM table = new CompiledFSM(states, symbols, finalStates, transitions.values(), initialState, symbolClasses);
+        Automaton engine;
+        if (!alternatives.isEmpty()) {
+            engine = new LazyDfa(table, alternativeTransitions(), lazyDfaBudget);
+        } else {
+            engine = jit ? JitCompiler.compile(table) : null;
+        }
+        return new FsmSnapshot(version, engine != null ? engine : table, table);
+    }
+
+    // Runs a group of mutations as one change: other threads keep executing on the snapshot of the
+    // definition before it (see snapshot()) until all of them are done. When that snapshot has been
+    // executed on, the next one is built before the update returns, so readers stay pinned instead of
+    // waiting for the lock; otherwise it is built by the first execution that needs it, and loading a
+    // script of many commands does not recompile the machine per command.
+    public synchronized void update(Runnable mutations) {
+        boolean outer = !updating;
+        if (outer) {
+            stableVersion = version;
+        }
+        updating = true;
+        try {
+            mutations.run();
+        } finally {
+            if (outer) {
+                FsmSnapshot built = working;
+                FsmSnapshot current = snapshot;
+                working = null;
+                if (current != null && current.version() != version && current.used) {
+                    snapshot = built != null && built.version() == version ? built : build();
+                }
+                updating = false;
+                Journal j = journal;
+                if (j != null && j.needsCompaction()) {
+                    compactJournal();
                 }
             }
+        }
+    }
+
+    // Byte budget of the per-thread DFA cache used to run nondeterministic FSMs.
+    public synchronized void setLazyDfaBudget(long bytes) {
+        lazyDfaBudget = bytes;
+        changed();
+    }
+
+    public long getLazyDfaBudget() {
+        return lazyDfaBudget;
+    }
+
+    // Symbols that lead to the same state from every state are merged into one column of the run table.
+    // Returns the number of symbol classes of the current machine.
+    public synchronized int setSymbolClassesEnabled(boolean enabled) {
+        symbolClasses = enabled;
+        materialize();
+        changed();
+        return publish().table().classCount();
+    }
+
+    public boolean isSymbolClassesEnabled() {
+        return symbolClasses;
+    }
+
+    // With JIT enabled, machines of up to JitCompiler.MAX_STATES states run on generated bytecode;
+    // larger ones keep the table engine. Returns true if the current machine is now JIT compiled.
+    public synchronized boolean setJitEnabled(boolean enabled) {
+        jit = enabled;
+        materialize();
+        changed();
+        return publish().isJitCompiled();
+    }
+
+    private void changed() {
+        version++;
+    }
 
-            if (!found) {
-                System.out.println("\nNo valid transition from state '" + currentState + "' using symbol '" + symbol + "'.");
-                return "NO";
+    // Appends a successful mutation to the journal, if there is one, and compacts it once it has grown
+    // large; inside update() compaction waits until all of the update's mutations are applied.
+    private void journal(byte op, String... args) {
+        Journal j = journal;
+        if (j == null) {
+            return;
+        }
+        j.append(op, args);
+        if (!updating && j.needsCompaction()) {
+            compactJournal();
+        }
+    }
+
+    // Recovers the definition from the journal directory, or starts one from the current definition,
+    // and records every later mutation there. A previously opened journal is closed first.
+    public synchronized Journal openJournal(Path directory, long commitIntervalMillis, long compactBytes) throws IOException {
+        closeJournal();
+        materialize();
+        journal = Journal.open(this, directory, commitIntervalMillis, compactBytes);
+        return journal;
+    }
+
+    public synchronized void closeJournal() {
+        Journal j = journal;
+        if (j == null) {
+            return;
+        }
+        journal = null;
+        try {
+            j.close();
+        } catch (IOException e) {
+            System.out.println("Error: Could not close journal. " + e.getMessage());
+        }
+    }
+
+    public Journal journal() {
+        return journal;
+    }
+
+    // Writes a snapshot of the definition and starts an empty journal. Returns false on failure.
+    public synchronized boolean compactJournal() {
+        Journal j = journal;
+        if (j == null) {
+            return false;
+        }
+        try {
+            materialize();
+            j.compact(this);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error: Could not compact journal. " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Any printable Latin-1 character except ';' and ',', which delimit commands and transitions in scripts.
+    private static boolean isSymbolCharacter(char c) {
+        return c < CompiledFSM.ALPHABET_SIZE && c != ';' && c != ','
+                && !Character.isISOControl(c) && !Character.isWhitespace(c) && !Character.isSpaceChar(c);
+    }
+
+    // [A-Z0-9]+ without a regex; names are upper-cased before the check.
+    private static boolean isAlphanumeric(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if ((c < 'A' || c > 'Z') && (c < '0' || c > '9')) {
+                return false;
             }
         }
+        return true;
+    }
 
-        if (finalStates.contains(currentState)) {
-            System.out.println("\nYES");
-            return "YES";
-        } else {
-            System.out.println("\nNO");
-            return "NO";
+    // Replaces the machine with its minimal equivalent: unreachable and dead states are removed,
+    // equivalent states are merged into the first declared one. Returns false if nothing could be done.
+    public synchronized boolean minimize() {
+        materialize();
+        if (initialState == null) {
+            System.out.println("Error: Initial state is not set.");
+            return false;
+        }
+        if (!alternatives.isEmpty()) {
+            System.out.println("Error: Only deterministic FSMs can be minimized.");
+            return false;
+        }
+        CompiledFSM table = compiled();
+        int[] rep = Minimizer.representatives(table);
+        Map<String, String> representative = new HashMap<>();
+        for (int i = 0; i < rep.length; i++) {
+            if (rep[i] >= 0) {
+                representative.put(table.stateName(i), table.stateName(rep[i]));
+            }
+        }
+
+        Map<String, Transition> kept = new LinkedHashMap<>();
+        for (Transition t : transitions.values()) {
+            String from = t.getCurrentState();
+            String to = representative.get(t.getNextState());
+            if (from.equals(representative.get(from)) && to != null) {
+                kept.put(transitionKey(t.getSymbol(), from), new Transition(t.getSymbol(), from, to));
+            }
         }
+        states.removeIf(state -> !state.equals(representative.get(state)));
+        finalStates.retainAll(states);
+        transitions.clear();
+        transitions.putAll(kept);
+        initialState = representative.get(initialState);
+        changed();
+        journal(Journal.MINIMIZE);
+        return true;
     }
 
-    public void print() {
+    public synchronized void print() {
+        materialize();
         System.out.println("SYMBOLS " + symbols);
 
         System.out.print("STATES {");
@@ -188,17 +653,39 @@ public class FSM implements Serializable {
         System.out.println("}");
 
         System.out.println("TRANSITIONS:");
-        for (Transition t : transitions) {
+        for (Transition t : transitions.values()) {
             System.out.println(t);
         }
+        for (Transition t : alternativeTransitions()) {
+            System.out.println(t);
+        }
+        if (!alternatives.isEmpty()) {
+            System.out.println("Nondeterministic: executed on a lazily built DFA.");
+            return;
+        }
+        CompiledFSM table = compiled();
+        if (table.deadStateCount() + table.absorbingStateCount() > 0) {
+            List<String> dead = new ArrayList<>();
+            List<String> absorbing = new ArrayList<>();
+            for (int s = 0; s < table.stateCount(); s++) {
+                if (table.isDead(s)) {
+                    dead.add(table.stateName(s));
+                } else if (table.isAbsorbing(s)) {
+                    absorbing.add(table.stateName(s));
+                }
+            }
+            System.out.println("DEAD STATES " + dead + " (reject: no final state is reachable)");
+            System.out.println("ABSORBING STATES " + absorbing + " (accept: every symbol stays in them)");
+        }
     }
 
-    public void printToFile(String filename) {
+    public synchronized void printToFile(String filename) {
         if (filename == null || filename.isEmpty()) {
             System.out.println("Error: Invalid filename.");
             return;
         }
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+        materialize();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename, StandardCharsets.UTF_8))) {
             writer.write("SYMBOLS ");
             for (String symbol : symbols) {
                 writer.write(symbol + " ");
@@ -225,70 +712,212 @@ public class FSM implements Serializable {
 
             writer.write("TRANSITIONS ");
             boolean first = true;
-            for (Transition t : transitions) {
+            for (Transition t : transitions.values()) {
                 if (!first) writer.write(", ");
                 writer.write(t.getSymbol() + " " + t.getCurrentState() + " " + t.getNextState());
                 first = false;
             }
             writer.write(";\n");
 
+            if (!alternatives.isEmpty()) {
+                writer.write("ADD-TRANSITIONS ");
+                first = true;
+                for (Transition t : alternativeTransitions()) {
+                    if (!first) writer.write(", ");
+                    writer.write(t.getSymbol() + " " + t.getCurrentState() + " " + t.getNextState());
+                    first = false;
+                }
+                writer.write(";\n");
+            }
+
             System.out.println("FSM printed to file: '" + filename + "'");
         } catch (IOException e) {
             System.out.println("Error: Could not write FSM to file. " + e.getMessage());
         }
     }
-    public void compileToFile(String filename) {
+    public synchronized void compileToFile(String filename) {
         if (filename == null || filename.isEmpty()) {
             System.out.println("Error: Invalid filename.");
             return;
         }
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
-            oos.writeObject(this);
+        materialize();
+        try {
+            writeBinary(Paths.get(filename));
             System.out.println("Compile successful: FSM saved to '" + filename + "'");
         } catch (IOException e) {
             System.out.println("Error: Could not compile FSM to file. " + e.getMessage());
         }
     }
 
-    public void loadFromFile(String filename) {
+    public synchronized void loadFromFile(String filename) {
         if (filename == null || filename.isEmpty()) {
             System.out.println("Error: Invalid filename.");
             return;
         }
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
-            FSM loaded = (FSM) ois.readObject();
-            this.symbols.clear();
-            this.symbols.addAll(loaded.symbols);
-            this.states.clear();
-            this.states.addAll(loaded.states);
-            this.finalStates.clear();
-            this.finalStates.addAll(loaded.finalStates);
-            this.transitions.clear();
-            this.transitions.addAll(loaded.transitions);
-            this.initialState = loaded.initialState;
+        Path path = Paths.get(filename);
+        if (MappedImage.isImage(path)) {
+            try {
+                mapImage(path);
+                journal(Journal.IMAGE, path.toAbsolutePath().toString());
+                System.out.println("Load successful: FSM image mapped from '" + filename + "'");
+            } catch (IOException e) {
+                System.out.println("Error: Could not load FSM from file. " + e.getMessage());
+            }
+            return;
+        }
+        if (BinaryFormat.isBinary(path)) {
+            try {
+                BinaryFormat.read(this, path);
+                compactJournal();
+                System.out.println("Load successful: FSM loaded from '" + filename + "'");
+            } catch (IOException e) {
+                System.out.println("Error: Could not load FSM from file. " + e.getMessage());
+            }
+            return;
+        }
+
+        // Files written by earlier versions with Java serialization.
+        try (ObjectInputStream ois = new SerializedInput(new FileInputStream(filename))) {
+            Object read = ois.readObject();
+            if (read instanceof SerializedV1) {
+                SerializedV1 loaded = (SerializedV1) read;
+                define(loaded.symbols, loaded.states, loaded.finalStates, loaded.transitions, loaded.initialState);
+            } else {
+                FSM loaded = (FSM) read;
+                define(loaded.symbols, loaded.states, loaded.finalStates, loaded.transitions.values(), loaded.initialState);
+            }
+            compactJournal();
             System.out.println("Load successful: FSM loaded from '" + filename + "'");
         } catch (IOException | ClassNotFoundException e) {
             System.out.println("Error: Could not load FSM from file. " + e.getMessage());
         }
     }
-    
-    public List<String> getSymbols() {
-        return Collections.unmodifiableList(symbols);
+
+    public synchronized void compileToImage(String filename) {
+        if (filename == null || filename.isEmpty()) {
+            System.out.println("Error: Invalid filename.");
+            return;
+        }
+        if (!isDeterministic()) {
+            System.out.println("Error: Only deterministic FSMs can be compiled to an image.");
+            return;
+        }
+        try {
+            MappedImage.write(compiled(), transitions.size(), Paths.get(filename));
+            System.out.println("Compile successful: FSM image saved to '" + filename + "'");
+        } catch (IOException e) {
+            System.out.println("Error: Could not compile FSM image. " + e.getMessage());
+        }
+    }
+
+    // Replaces the definition with a mapped image; it stays off the heap until the first change.
+    synchronized void mapImage(Path path) throws IOException {
+        MappedImage mapped = MappedImage.open(path);
+        reset();
+        image = mapped;
+        changed();
+    }
+
+    // Writes the definition in BinaryFormat straight from the collections, without compiling it.
+    synchronized void writeBinary(Path file) throws IOException {
+        materialize();
+        Collection<Transition> all = transitions.values();
+        if (!alternatives.isEmpty()) {
+            all = new ArrayList<>(all);
+            all.addAll(alternativeTransitions());
+        }
+        BinaryFormat.write(symbols, states, finalStates, all, initialState, file);
+    }
+
+    private synchronized void materialize() {
+        MappedImage mapped = image;
+        if (mapped != null) {
+            image = null;
+            mapped.materialize(this);
+        }
+    }
+
+    // Replaces the whole definition with already validated data.
+    synchronized void define(Collection<String> symbols, Collection<String> states, Collection<String> finalStates,
+                Collection<Transition> transitions, String initialState) {
+        this.symbols.clear();
+        this.symbols.addAll(symbols);
+        this.states.clear();
+        this.states.addAll(states);
+        this.finalStates.clear();
+        this.finalStates.addAll(finalStates);
+        this.transitions.clear();
+        this.alternatives.clear();
+        for (Transition t : transitions) {
+            String key = transitionKey(t.getSymbol(), t.getCurrentState());
+            if (t.isEpsilon() || this.transitions.containsKey(key)) {
+                this.alternatives.computeIfAbsent(key, k -> new LinkedHashMap<>()).put(t.getNextState(), t);
+            } else {
+                this.transitions.put(key, t);
+            }
+        }
+        this.initialState = initialState;
+        this.image = null;
+        changed();
     }
 
-    public List<String> getStates() {
-        return Collections.unmodifiableList(states);
+    // The getters return copies, so callers can iterate them while other threads change the definition.
+    public synchronized Set<String> getSymbols() {
+        materialize();
+        return Collections.unmodifiableSet(new LinkedHashSet<>(symbols));
     }
 
-    public List<String> getFinalStates() {
-        return Collections.unmodifiableList(finalStates);
+    public synchronized Set<String> getStates() {
+        materialize();
+        return Collections.unmodifiableSet(new LinkedHashSet<>(states));
     }
 
-    public String getInitialState() {
+    public synchronized Set<String> getFinalStates() {
+        materialize();
+        return Collections.unmodifiableSet(new LinkedHashSet<>(finalStates));
+    }
+
+    public synchronized String getInitialState() {
+        MappedImage mapped = image;
+        if (mapped != null) {
+            return mapped.initialState() < 0 ? null : mapped.stateName(mapped.initialState());
+        }
         return initialState;
     }
 
-    public List<Transition> getTransitions() {
-        return Collections.unmodifiableList(transitions);
+    // Deterministic transitions first, then further targets and EPSILON moves.
+    public synchronized Collection<Transition> getTransitions() {
+        materialize();
+        List<Transition> all = new ArrayList<>(transitions.values());
+        all.addAll(alternativeTransitions());
+        return Collections.unmodifiableList(all);
+    }
+
+    // Serialized form of the first FSM version (serialVersionUID 1), which kept its definition in lists.
+    private static final class SerializedV1 implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private List<String> symbols;
+        private List<String> states;
+        private List<String> finalStates;
+        private List<Transition> transitions;
+        private String initialState;
+    }
+
+    // Reads version 1 streams of FSM into SerializedV1; both have the same fields, so the stream data
+    // matches the substituted class description.
+    private static final class SerializedInput extends ObjectInputStream {
+        SerializedInput(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass stream = super.readClassDescriptor();
+            if (stream.getName().equals(FSM.class.getName()) && stream.getSerialVersionUID() == 1L) {
+                return ObjectStreamClass.lookup(SerializedV1.class);
+            }
+            return stream;
+        }
     }
 }
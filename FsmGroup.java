@@ -0,0 +1,196 @@
+package fsm.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/*
+ * Runs several independent machines over one input in a single pass. Every character is read once and
+ * then advances a vector holding the current state of each machine, instead of reading and decoding
+ * the whole input again per machine. The result is a bitmap with bit m set when machine m accepts.
+ *
+ * Table machines are copied into one shared array, each with an extra column for characters that are
+ * not its symbols and a dead row that missing transitions and transitions into dead states lead to
+ * (see InterleavedExecutor), so a step is two loads without branches. The column maps are laid out by
+ * character, which keeps one character's columns for all machines adjacent. A dead table machine keeps
+ * stepping on its dead row, which is cheaper than taking it out of the vector; every 64 characters the
+ * pass checks whether any is still alive. Nondeterministic machines and mapped images step through
+ * their own engine and leave as soon as they die. A machine added twice shares one cursor on its
+ * engine, since the states of a lazy engine are only valid until its next cache flush.
+ */
+public final class FsmGroup {
+    private static final int ALPHABET_SIZE = CompiledFSM.ALPHABET_SIZE;
+
+    private final int size;
+    private final int[] tableMember;        // machine index of each table machine
+    private final int[] next;               // rows of all table machines; entries are absolute row offsets
+    private final int[] columnOf;           // char * table machines + table machine -> column
+    private final int[] initial;            // first row of the initial state, -1 if there is none
+    private final int[] base;               // first row of each table machine
+    private final int[] stride;
+    private final int[] dead;               // row of each table machine's dead state
+    private final boolean[] accepting;      // final flags of all table machines' states, dead ones included
+    private final int[] acceptBase;         // index of each table machine's first state in accepting
+    private final int[][] engineMembers;    // machine indexes run on each engine; one engine may serve several
+    private final Automaton[] engines;
+
+    public FsmGroup(List<FsmSnapshot> machines) {
+        size = machines.size();
+        List<Integer> tables = new ArrayList<>();
+        List<Integer> others = new ArrayList<>();
+        long cells = 0;
+        int states = 0;
+        for (int m = 0; m < size; m++) {
+            FsmSnapshot machine = machines.get(m);
+            if (machine.table() != null && !machine.automaton().isLazy()) {
+                CompiledFSM table = machine.table();
+                tables.add(m);
+                cells += (long) (table.stateCount() + 1) * (table.classCount() + 1);
+                states += table.stateCount() + 1;
+            } else {
+                others.add(m);
+            }
+        }
+        if (cells > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Group tables exceed 2^31 entries.");
+        }
+
+        int t = tables.size();
+        tableMember = new int[t];
+        next = new int[(int) cells];
+        columnOf = new int[ALPHABET_SIZE * t];
+        initial = new int[t];
+        base = new int[t];
+        stride = new int[t];
+        dead = new int[t];
+        accepting = new boolean[states];
+        acceptBase = new int[t];
+        int row = 0;
+        int state = 0;
+        for (int i = 0; i < t; i++) {
+            CompiledFSM table = machines.get(tables.get(i)).table();
+            int count = table.stateCount();
+            int classes = table.classCount();
+            tableMember[i] = tables.get(i);
+            base[i] = row;
+            stride[i] = classes + 1;
+            dead[i] = row + count * stride[i];
+            acceptBase[i] = state;
+            Arrays.fill(next, row, row + (count + 1) * stride[i], dead[i]);
+            for (int s = 0; s < count; s++) {
+                for (int c = 0; c < classes; c++) {
+                    int target = table.nextInClass(s, c);
+                    if (target >= 0 && !table.isDead(target)) {
+                        next[row + s * stride[i] + c] = row + target * stride[i];
+                    }
+                }
+                accepting[state + s] = table.isFinal(s);
+            }
+            for (char ch = 0; ch < ALPHABET_SIZE; ch++) {
+                int c = table.classIndex(ch);
+                columnOf[ch * t + i] = c < 0 ? classes : c;
+            }
+            initial[i] = table.initialState() < 0 ? -1 : row + table.initialState() * stride[i];
+            row += (count + 1) * stride[i];
+            state += count + 1;
+        }
+
+        List<Automaton> distinct = new ArrayList<>();
+        List<List<Integer>> members = new ArrayList<>();
+        for (int m : others) {
+            Automaton engine = machines.get(m).automaton();
+            int i = 0;
+            while (i < distinct.size() && distinct.get(i) != engine) {
+                i++;
+            }
+            if (i == distinct.size()) {
+                distinct.add(engine);
+                members.add(new ArrayList<>());
+            }
+            members.get(i).add(m);
+        }
+        engines = distinct.toArray(new Automaton[0]);
+        engineMembers = new int[engines.length][];
+        for (int i = 0; i < engines.length; i++) {
+            engineMembers[i] = members.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Bit m is set if machine m accepts the input.
+    public BitSet accepts(CharSequence input) {
+        BitSet accepted = new BitSet(size);
+        int t = tableMember.length;
+        int[] row = new int[t];
+        boolean tablesLive = false;
+        for (int i = 0; i < t; i++) {
+            row[i] = initial[i] >= 0 ? initial[i] : dead[i];
+            tablesLive |= initial[i] >= 0;
+        }
+        int[] state = new int[engines.length];
+        int[] running = new int[engines.length];
+        int engineActive = 0;
+        for (int i = 0; i < engines.length; i++) {
+            state[i] = engines[i].initialState();
+            if (state[i] >= 0) {
+                running[engineActive++] = i;
+            }
+        }
+
+        int length = input.length();
+        for (int pos = 0; pos < length && (tablesLive || engineActive > 0); pos++) {
+            char ch = input.charAt(pos);
+            if (ch >= ALPHABET_SIZE) {      // not a symbol of any machine
+                Arrays.fill(row, -1);
+                engineActive = 0;
+                break;
+            }
+            if (tablesLive) {
+                int columns = ch * t;
+                for (int i = 0; i < t; i++) {
+                    row[i] = next[row[i] + columnOf[columns + i]];
+                }
+                if ((pos & 63) == 63) {
+                    tablesLive = anyLive(row);
+                }
+            }
+            for (int j = 0; j < engineActive; j++) {
+                int i = running[j];
+                int symbol = engines[i].symbolIndex(ch);
+                int target = symbol < 0 ? -1 : engines[i].next(state[i], symbol);
+                state[i] = target;
+                if (target < 0) {
+                    running[j--] = running[--engineActive];
+                }
+            }
+        }
+
+        for (int i = 0; i < t; i++) {
+            if (row[i] >= 0 && accepting[acceptBase[i] + (row[i] - base[i]) / stride[i]]) {
+                accepted.set(tableMember[i]);
+            }
+        }
+        for (int j = 0; j < engineActive; j++) {
+            int i = running[j];
+            if (engines[i].isFinal(state[i])) {
+                for (int m : engineMembers[i]) {
+                    accepted.set(m);
+                }
+            }
+        }
+        return accepted;
+    }
+
+    private boolean anyLive(int[] row) {
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] != dead[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
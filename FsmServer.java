@@ -0,0 +1,197 @@
+package fsm.core.io;
+
+import fsm.core.Automaton;
+import fsm.core.FsmSnapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Answers execution requests for one machine over a loopback TCP port or a Unix-domain socket.
+ *
+ *   request:  input length (int, big-endian), then the input as Latin-1 bytes
+ *   response: one byte per request, in request order: 1 if the machine accepts the input, 0 if not
+ *
+ * Clients may send any number of requests without waiting for answers. The server answers every
+ * complete request in its read buffer and sends those answers in one write, so a pipelining client
+ * pays one system call per batch instead of one per input. A length below 0 or above MAX_INPUT closes
+ * the connection.
+ *
+ * Every connection runs on its own thread, a virtual thread where the JDK has them (21 and later),
+ * and executes on the same immutable FsmSnapshot, so connections share the compiled table without
+ * locking. Inputs are run from the receive buffer, without decoding them into strings.
+ */
+public final class FsmServer implements Closeable {
+    public static final int MAX_INPUT = 1 << 24;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FsmSnapshot snapshot;
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final ExecutorService connections;
+    private final boolean virtualThreads;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private volatile boolean closed;
+
+    private FsmServer(FsmSnapshot snapshot, ServerSocketChannel server) throws IOException {
+        this.snapshot = snapshot;
+        this.server = server;
+        this.address = server.getLocalAddress();
+        ExecutorService virtual = virtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.connections = virtual != null ? virtual : Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "fsm-server-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Binds "unix:<path>" to a Unix-domain socket and anything else, a port number, to that port on the
+    // loopback interface; port 0 picks a free one.
+    public static FsmServer open(String endpoint, FsmSnapshot snapshot) throws IOException {
+        ServerSocketChannel channel;
+        if (endpoint.startsWith("unix:")) {
+            Path path = Path.of(endpoint.substring("unix:".length()));
+            Files.deleteIfExists(path);
+            channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.bind(UnixDomainSocketAddress.of(path));
+        } else {
+            int port;
+            try {
+                port = Integer.parseInt(endpoint);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid port '" + endpoint + "'. Use a port number or unix:<path>.");
+            }
+            channel = ServerSocketChannel.open();
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        }
+        return new FsmServer(snapshot, channel);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() exists from JDK 19 on and works without preview
+    // features from 21 on; it is looked up reflectively so the server still builds and runs on 17.
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public SocketAddress address() {
+        return address;
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long accepted() {
+        return accepted.sum();
+    }
+
+    // Accepts connections until the server is closed.
+    public void serve() throws IOException {
+        while (!closed) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            if (address instanceof InetSocketAddress) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            connections.execute(() -> handle(channel));
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        Automaton engine = snapshot.automaton();
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+        try (channel) {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                long answered = 0;
+                long yes = 0;
+                while (in.remaining() >= 4) {
+                    int length = in.getInt(in.position());
+                    if (length < 0 || length > MAX_INPUT) {
+                        return;
+                    }
+                    if (in.remaining() < 4 + length) {
+                        break;
+                    }
+                    int from = in.position() + 4;
+                    int state = engine.initialState();
+                    boolean accepts = state >= 0 && engine.accepts(engine.run(state, in, from, from + length));
+                    if (!out.hasRemaining()) {
+                        write(channel, out);
+                    }
+                    out.put((byte) (accepts ? 1 : 0));
+                    answered++;
+                    yes += accepts ? 1 : 0;
+                    in.position(from + length);
+                }
+                write(channel, out);
+                requests.add(answered);
+                accepted.add(yes);
+
+                // Keep the partial request, in a larger buffer if it does not fit.
+                if (in.remaining() >= 4 && 4 + in.getInt(in.position()) > in.capacity()) {
+                    ByteBuffer larger = ByteBuffer.allocate(4 + in.getInt(in.position()));
+                    in = larger.put(in);
+                } else {
+                    in.compact();
+                }
+            }
+        } catch (IOException e) {
+            // the client went away
+        }
+    }
+
+    private static void write(SocketChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        connections.shutdown();
+        try {
+            connections.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+}
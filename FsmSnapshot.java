@@ -0,0 +1,53 @@
+package fsm.core;
+
+// Immutable, compiled state of an FSM at one definition version. Safe to share between threads.
+public final class FsmSnapshot {
+    private final long version;
+    private final Automaton automaton;
+    private final CompiledFSM table;       // null when the snapshot runs on a mapped image
+    boolean used;                          // executed on; FSM.update then publishes the next one eagerly
+    private volatile ParallelExecutor parallel;
+
+    FsmSnapshot(long version, Automaton automaton, CompiledFSM table) {
+        this.version = version;
+        this.automaton = automaton;
+        this.table = table;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public Automaton automaton() {
+        return automaton;
+    }
+
+    public boolean isJitCompiled() {
+        return automaton instanceof JitAutomaton;
+    }
+
+    CompiledFSM table() {
+        return table;
+    }
+
+    public int run(CharSequence input) {
+        return automaton.run(input);
+    }
+
+    public boolean accepts(CharSequence input) {
+        return automaton.accepts(automaton.run(input));
+    }
+
+    // Shared, so chunk mapping reuses its per-thread scratch arrays across runs; a race creates a spare one.
+    public ParallelExecutor parallelExecutor() {
+        ParallelExecutor executor = parallel;
+        if (executor == null) {
+            parallel = executor = new ParallelExecutor(automaton);
+        }
+        return executor;
+    }
+
+    public ExecutionSession openSession() {
+        return new ExecutionSession(automaton);
+    }
+}
@@ -0,0 +1,157 @@
+package fsm.core;
+
+import java.util.Arrays;
+
+/*
+ * Evaluates many inputs on one thread by advancing STREAMS of them in lockstep over a copy of the
+ * transition table. A single run is a chain of dependent loads: each step needs the current state
+ * before it can fetch the next one, so once the table no longer fits in cache the core waits on one
+ * miss at a time. Steps of independent inputs do not depend on each other, which lets the CPU keep a
+ * load of every stream in flight at once.
+ *
+ * The copy has a column per symbol class of a table engine (per symbol for other engines), an extra
+ * column for characters that are not symbols and an extra dead row that every missing transition
+ * leads to, so the inner loop has no branches; transitions into dead states of a table engine lead
+ * there as well, so those inputs leave early. Entries hold row offsets instead of state indexes, which
+ * saves a multiply per step. Streams leave at the end of their input or when they die, and the
+ * next input takes their place.
+ *
+ * The steps can also be taken with vector gathers (VectorSteps, in the vector module), which fetch the
+ * next rows of all streams with one instruction. That path is only taken when an executor asks for it
+ * and the JVM runs with --add-modules jdk.incubator.vector and the vector module is on the class path;
+ * it did not beat the scalar loop in BatchBenchmark, so it is off by default.
+ */
+public final class InterleavedExecutor {
+    public static final int STREAMS = 16;
+    private static final int ALPHABET_SIZE = CompiledFSM.ALPHABET_SIZE;
+
+    private final int[] next;               // row + column -> row, where row = state * stride
+    private final int[] columnOf;           // char -> column, the last column for non-symbols
+    private final boolean[] accepting;      // state -> final, false for the dead state
+    private final int stride;
+    private final int invalid;
+    private final int dead;
+    private final int initial;              // row of the initial state, -1 if there is none
+    private final Steps steps;
+
+    // Advances streams [0, active) by count characters each, starting at pos[j] of text[j].
+    interface Steps {
+        void advance(int[] next, int[] columnOf, int invalid, String[] text, int[] pos, int[] row, int active, int count);
+    }
+
+    private static final Steps SCALAR = InterleavedExecutor::advance;
+    private static final Steps GATHER = loadGather();
+
+    public InterleavedExecutor(Automaton table) {
+        this(table, false);
+    }
+
+    // With gather true vector gathers are used where they are available.
+    public InterleavedExecutor(Automaton table, boolean gather) {
+        steps = gather && GATHER != null ? GATHER : SCALAR;
+        CompiledFSM classes = table instanceof CompiledFSM ? (CompiledFSM) table : null;
+        int states = table.stateCount();
+        int symbols = classes != null ? classes.classCount() : table.symbolCount();
+        stride = symbols + 1;
+        invalid = symbols;
+        dead = states * stride;
+        next = new int[(states + 1) * stride];
+        Arrays.fill(next, dead);
+        accepting = new boolean[states + 1];
+        for (int s = 0; s < states; s++) {
+            for (int c = 0; c < symbols; c++) {
+                int target = classes != null ? classes.nextInClass(s, c) : table.next(s, c);
+                if (target >= 0 && (classes == null || !classes.isDead(target))) {
+                    next[s * stride + c] = target * stride;
+                }
+            }
+            accepting[s] = table.isFinal(s);
+        }
+        columnOf = new int[ALPHABET_SIZE];
+        for (char ch = 0; ch < ALPHABET_SIZE; ch++) {
+            int symbol = classes != null ? classes.classIndex(ch) : table.symbolIndex(ch);
+            columnOf[ch] = symbol < 0 ? invalid : symbol;
+        }
+        initial = table.initialState() < 0 ? -1 : table.initialState() * stride;
+    }
+
+    private static Steps loadGather() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (Steps) Class.forName("fsm.core.VectorSteps").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    // Whether executors take their steps with vector gathers.
+    public static boolean gatherAvailable() {
+        return GATHER != null;
+    }
+
+    public boolean usesGather() {
+        return steps != SCALAR;
+    }
+
+    // results[i] = whether inputs[i] is accepted, for every i in [from, to).
+    public void accepts(String[] inputs, boolean[] results, int from, int to) {
+        if (initial < 0) {
+            Arrays.fill(results, from, to, false);
+            return;
+        }
+        String[] text = new String[STREAMS];
+        int[] owner = new int[STREAMS];
+        int[] row = new int[STREAMS];
+        int[] pos = new int[STREAMS];
+        int[] end = new int[STREAMS];
+        int active = 0;
+        int taken = from;
+        while (true) {
+            for (; active < STREAMS && taken < to; active++, taken++) {
+                text[active] = inputs[taken];
+                owner[active] = taken;
+                row[active] = initial;
+                pos[active] = 0;
+                end[active] = inputs[taken].length();
+            }
+            if (active == 0) {
+                return;
+            }
+
+            // Every stream can take as many steps as the shortest remaining input without a bounds check.
+            int count = Integer.MAX_VALUE;
+            for (int j = 0; j < active; j++) {
+                count = Math.min(count, end[j] - pos[j]);
+            }
+            steps.advance(next, columnOf, invalid, text, pos, row, active, count);
+
+            int kept = 0;
+            for (int j = 0; j < active; j++) {
+                pos[j] += count;
+                if (pos[j] == end[j] || row[j] == dead) {
+                    results[owner[j]] = accepting[row[j] / stride];
+                } else {
+                    text[kept] = text[j];
+                    owner[kept] = owner[j];
+                    row[kept] = row[j];
+                    pos[kept] = pos[j];
+                    end[kept] = end[j];
+                    kept++;
+                }
+            }
+            active = kept;
+        }
+    }
+
+    private static void advance(int[] next, int[] columnOf, int invalid, String[] text, int[] pos, int[] row,
+                                int active, int count) {
+        for (int k = 0; k < count; k++) {
+            for (int j = 0; j < active; j++) {
+                char ch = text[j].charAt(pos[j] + k);
+                row[j] = next[row[j] + (ch < ALPHABET_SIZE ? columnOf[ch] : invalid)];
+            }
+        }
+    }
+}
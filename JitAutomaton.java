@@ -0,0 +1,63 @@
+package fsm.core;
+
+// Runs inputs through a generated executor; everything else is answered by the compiled table.
+final class JitAutomaton implements Automaton {
+    private final CompiledFSM table;
+    private final JitRunner runner;
+
+    JitAutomaton(CompiledFSM table, JitRunner runner) {
+        this.table = table;
+        this.runner = runner;
+    }
+
+    // JitCompiler only compiles machines with an initial state.
+    @Override
+    public int run(CharSequence input) {
+        return runner.run(table.initialState(), input, 0, input.length());
+    }
+
+    @Override
+    public int run(int state, CharSequence input, int from, int to) {
+        return runner.run(state, input, from, to);
+    }
+
+    @Override
+    public int initialState() {
+        return table.initialState();
+    }
+
+    @Override
+    public int symbolIndex(char ch) {
+        return table.symbolIndex(ch);
+    }
+
+    @Override
+    public int next(int state, int symbol) {
+        return table.next(state, symbol);
+    }
+
+    @Override
+    public boolean isFinal(int state) {
+        return table.isFinal(state);
+    }
+
+    @Override
+    public String stateName(int state) {
+        return table.stateName(state);
+    }
+
+    @Override
+    public String symbolName(int symbol) {
+        return table.symbolName(symbol);
+    }
+
+    @Override
+    public int stateCount() {
+        return table.stateCount();
+    }
+
+    @Override
+    public int symbolCount() {
+        return table.symbolCount();
+    }
+}
@@ -0,0 +1,298 @@
+package fsm.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Generates a hidden class per FSM whose run method encodes the machine in control flow: every state is
+ * a switch over the input characters of the declared symbols whose cases are the successor states as
+ * constants, so the character-to-symbol mapping is part of the code as well. Only small machines are
+ * compiled; HotSpot does not JIT-compile methods above 8000 bytes of bytecode.
+ */
+final class JitCompiler {
+    static final int MAX_STATES = 64;
+    private static final int MAX_CODE_SIZE = 8000;
+    private static final int ALPHABET_SIZE = 256;
+    private static final String RUNNER = "fsm/core/JitRunner";
+
+    // Constant pool indexes, see classFile()
+    private static final int THIS_CLASS = 2;
+    private static final int SUPER_CLASS = 4;
+    private static final int SUPER_INIT = 8;
+    private static final int RUN_NAME = 9;
+    private static final int RUN_DESC = 10;
+    private static final int CHAR_AT = 16;
+    private static final int CODE = 17;
+    private static final int INIT_NAME = 5;
+    private static final int INIT_DESC = 6;
+
+    private JitCompiler() {}
+
+    // Returns null when the machine is too large for a generated executor or generation fails.
+    static Automaton compile(CompiledFSM table) {
+        int states = table.stateCount();
+        char[] keys = symbolCharacters(table);
+        if (table.initialState() < 0 || states > MAX_STATES || estimatedCodeSize(states, keys) > MAX_CODE_SIZE) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile(table, keys), true);
+            JitRunner runner = (JitRunner) lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class)).invoke();
+            return new JitAutomaton(table, runner);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    // The characters that are declared symbols, ascending; any other character is invalid.
+    private static char[] symbolCharacters(CompiledFSM table) {
+        char[] keys = new char[ALPHABET_SIZE];
+        int count = 0;
+        for (char c = 0; c < ALPHABET_SIZE; c++) {
+            if (table.symbolIndex(c) >= 0) {
+                keys[count++] = c;
+            }
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    // A tableswitch over the range of the keys when it is dense enough, as javac decides, else a lookupswitch.
+    private static boolean dense(char[] keys) {
+        return keys.length > 0 && keys[keys.length - 1] - keys[0] + 1 <= 2 * keys.length + 8;
+    }
+
+    private static int estimatedCodeSize(int states, char[] keys) {
+        int switchSize = dense(keys) ? 16 + 4 * (keys[keys.length - 1] - keys[0] + 1) : 12 + 8 * keys.length;
+        return 64 + states * (14 + switchSize);
+    }
+
+    private static byte[] classFile(CompiledFSM table, char[] keys) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(49);         // Java 5 class files verify without stack map frames
+
+        out.writeShort(18);
+        utf8(out, "fsm/core/JitRunner$Generated");                  // 1
+        out.writeByte(7); out.writeShort(1);                        // 2 this class
+        utf8(out, RUNNER);                                          // 3
+        out.writeByte(7); out.writeShort(3);                        // 4 super class
+        utf8(out, "<init>");                                        // 5
+        utf8(out, "()V");                                           // 6
+        out.writeByte(12); out.writeShort(5); out.writeShort(6);    // 7
+        out.writeByte(10); out.writeShort(4); out.writeShort(7);    // 8 JitRunner.<init>()V
+        utf8(out, "run");                                           // 9
+        utf8(out, "(ILjava/lang/CharSequence;II)I");                // 10
+        utf8(out, "java/lang/CharSequence");                        // 11
+        out.writeByte(7); out.writeShort(11);                       // 12
+        utf8(out, "charAt");                                        // 13
+        utf8(out, "(I)C");                                          // 14
+        out.writeByte(12); out.writeShort(13); out.writeShort(14);  // 15
+        out.writeByte(11); out.writeShort(12); out.writeShort(15);  // 16 CharSequence.charAt(I)C
+        utf8(out, "Code");                                          // 17
+
+        out.writeShort(0x0030);     // ACC_FINAL | ACC_SUPER
+        out.writeShort(THIS_CLASS);
+        out.writeShort(SUPER_CLASS);
+        out.writeShort(0);          // interfaces
+        out.writeShort(0);          // fields
+        out.writeShort(2);          // methods
+
+        byte[] init = {0x2A, (byte) 0xB7, 0, SUPER_INIT, (byte) 0xB1};  // aload_0 invokespecial return
+        method(out, 0x0001, INIT_NAME, INIT_DESC, 1, 1, init);
+        method(out, 0x0001, RUN_NAME, RUN_DESC, 2, 6, runCode(table, keys));
+
+        out.writeShort(0);          // attributes
+        return bytes.toByteArray();
+    }
+
+    // Locals: 0 this, 1 state, 2 input, 3 position, 4 end, 5 character.
+    // One loop header dispatches on the state so the loop stays reducible; HotSpot cannot
+    // OSR-compile a method whose states jump directly into each other, and after a deopt
+    // a long input would otherwise finish in the interpreter.
+    private static byte[] runCode(CompiledFSM table, char[] keys) {
+        int states = table.stateCount();
+        Assembler code = new Assembler(2 * states + 4);
+        int loop = 2 * states;
+        int done = loop + 1;
+        int invalid = loop + 2;
+        int noTransition = loop + 3;
+
+        code.bind(loop);
+        code.op(0x1D).op(0x15).u1(4);                       // iload_3 iload 4
+        code.op(0xA2).jump16(done);                         // if_icmpge done
+        code.op(0x2C).op(0x1D);                             // aload_2 iload_3
+        code.op(0xB9).u2(CHAR_AT).u1(2).u1(0);              // invokeinterface CharSequence.charAt
+        code.op(0x36).u1(5);                                // istore 5
+        code.op(0x84).u1(3).u1(1);                          // iinc 3 1
+        code.op(0x1B);                                      // iload_1
+        int dispatch = code.position();
+        code.op(0xAA);                                      // tableswitch on the state
+        code.align4();
+        code.jump32(done, dispatch);
+        code.u4(0).u4(states - 1);
+        for (int s = 0; s < states; s++) {
+            code.jump32(s, dispatch);
+        }
+
+        for (int s = 0; s < states; s++) {
+            code.bind(s);
+            code.op(0x15).u1(5);                            // iload 5
+            if (keys.length == 0) {
+                code.op(0x57);                              // pop
+                code.op(0xA7).jump16(invalid);
+                continue;
+            }
+            int switchAt = code.position();
+            if (dense(keys)) {
+                code.op(0xAA);                              // tableswitch on the character
+                code.align4();
+                code.jump32(invalid, switchAt);
+                code.u4(keys[0]).u4(keys[keys.length - 1]);
+                for (int c = keys[0], k = 0; c <= keys[keys.length - 1]; c++) {
+                    int label = invalid;
+                    if (c == keys[k]) {
+                        label = successor(table, s, keys[k++], states, noTransition);
+                    }
+                    code.jump32(label, switchAt);
+                }
+            } else {
+                code.op(0xAB);                              // lookupswitch on the character
+                code.align4();
+                code.jump32(invalid, switchAt);
+                code.u4(keys.length);
+                for (char key : keys) {
+                    code.u4(key);
+                    code.jump32(successor(table, s, key, states, noTransition), switchAt);
+                }
+            }
+        }
+        for (int t = 0; t < states; t++) {
+            code.bind(states + t);
+            code.pushInt(t).op(0x3C);                       // istore_1
+            code.op(0xA7).jump16(loop);
+        }
+        code.bind(done);
+        code.op(0x1B).op(0xAC);                             // return state
+        code.bind(invalid);
+        code.pushInt(Automaton.INVALID_SYMBOL).op(0xAC);
+        code.bind(noTransition);
+        code.pushInt(Automaton.NO_TRANSITION).op(0xAC);
+        return code.finish();
+    }
+
+    // Label of the block that moves from state on the character: states + successor, or noTransition.
+    private static int successor(CompiledFSM table, int state, char key, int states, int noTransition) {
+        int target = table.next(state, table.symbolIndex(key));
+        return target < 0 ? noTransition : states + target;
+    }
+
+    private static void method(DataOutputStream out, int access, int name, int descriptor,
+                               int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(CODE);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);          // exception table
+        out.writeShort(0);          // code attributes
+    }
+
+    private static void utf8(DataOutputStream out, String value) throws IOException {
+        out.writeByte(1);
+        out.writeUTF(value);
+    }
+
+    // Minimal bytecode buffer with forward references to numbered labels.
+    private static final class Assembler {
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private final int[] labels;
+        private final List<int[]> fixups = new ArrayList<>();   // {position, label, instruction start, width}
+
+        Assembler(int labelCount) {
+            labels = new int[labelCount];
+            Arrays.fill(labels, -1);
+        }
+
+        int position() {
+            return code.size();
+        }
+
+        Assembler op(int opcode) {
+            code.write(opcode);
+            return this;
+        }
+
+        Assembler u1(int value) {
+            code.write(value);
+            return this;
+        }
+
+        Assembler u2(int value) {
+            code.write(value >>> 8);
+            code.write(value);
+            return this;
+        }
+
+        Assembler u4(int value) {
+            return u2(value >>> 16).u2(value & 0xFFFF);
+        }
+
+        Assembler pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                return op(0x03 + value);                    // iconst_m1 .. iconst_5
+            }
+            return op(0x10).u1(value & 0xFF);               // bipush
+        }
+
+        void align4() {
+            while (code.size() % 4 != 0) {
+                code.write(0);
+            }
+        }
+
+        // 16-bit branch offset of the instruction whose opcode was just written.
+        Assembler jump16(int label) {
+            fixups.add(new int[] {code.size(), label, code.size() - 1, 2});
+            return u2(0);
+        }
+
+        Assembler jump32(int label, int instruction) {
+            fixups.add(new int[] {code.size(), label, instruction, 4});
+            return u4(0);
+        }
+
+        void bind(int label) {
+            labels[label] = code.size();
+        }
+
+        byte[] finish() {
+            byte[] bytes = code.toByteArray();
+            for (int[] fixup : fixups) {
+                int offset = labels[fixup[1]] - fixup[2];
+                if (fixup[3] == 2) {
+                    bytes[fixup[0]] = (byte) (offset >>> 8);
+                    bytes[fixup[0] + 1] = (byte) offset;
+                } else {
+                    for (int i = 0; i < 4; i++) {
+                        bytes[fixup[0] + i] = (byte) (offset >>> (24 - 8 * i));
+                    }
+                }
+            }
+            return bytes;
+        }
+    }
+}
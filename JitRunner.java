@@ -0,0 +1,7 @@
+package fsm.core;
+
+// Base class of the executors generated by JitCompiler; each subclass hard-codes one FSM.
+abstract class JitRunner {
+    // Continues a run in the given state over input[from, to).
+    public abstract int run(int state, CharSequence input, int from, int to);
+}
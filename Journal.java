@@ -0,0 +1,439 @@
+package fsm.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/*
+ * Write-ahead journal of definition changes, kept with snapshots in one directory:
+ *   snapshot-<n>.fsm   the whole definition in BinaryFormat, written by compaction
+ *   journal-<n>.log    every mutation made after snapshot n
+ * A journal record is the payload length (int), the CRC32 of the payload (int) and the payload: an
+ * operation byte followed by its arguments as short length + UTF-8 bytes.
+ *
+ * Mutations are appended to a memory buffer, and a background writer commits them in groups: it
+ * waits up to the commit interval for more records to join, writes them all and forces the file once,
+ * so a burst of changes costs one fsync. Compaction writes snapshot n+1 to a temporary file, renames
+ * it into place, starts journal n+1 and deletes generation n. Recovery loads the newest snapshot and
+ * replays its journal; a torn record at the end, left by a crash in the middle of a write, is cut off.
+ * A mapped image is journaled as its path instead of being compacted into a snapshot, so loading it
+ * keeps the machine off the heap; recovering such a journal maps the image file again.
+ */
+public final class Journal {
+    static final byte CLEAR = 1;
+    static final byte SYMBOL = 2;
+    static final byte STATE = 3;
+    static final byte INITIAL = 4;
+    static final byte FINAL = 5;
+    static final byte TRANSITION = 6;
+    static final byte TARGET = 7;
+    static final byte MINIMIZE = 8;
+    static final byte IMAGE = 9;            // an image mapped from the path; recovery maps it again
+    private static final int HEADER = 8;
+
+    private final Path directory;
+    private final long commitIntervalNanos;
+    private final long compactBytes;
+    private final Thread writer;
+    private final Thread shutdownHook;
+    private final CRC32 crc = new CRC32();
+    private FileChannel log;
+    private long generation;
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);  // records not yet handed to the writer
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+    private long appended;          // records appended since the journal was opened
+    private long durable;           // records forced to disk
+    private long logBytes;          // size of the current journal file, pending records included
+    private boolean recovered;
+    private long replayed;
+    private long commits;
+    private long compactions;
+    private boolean syncRequested;
+    private boolean closed;
+    private IOException failure;
+
+    private Journal(Path directory, long commitIntervalMillis, long compactBytes) {
+        this.directory = directory;
+        this.commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, commitIntervalMillis));
+        this.compactBytes = compactBytes;
+        writer = new Thread(this::writeLoop, "fsm-journal-writer");
+        writer.setDaemon(true);
+        shutdownHook = new Thread(this::closeQuietly, "fsm-journal-shutdown");
+    }
+
+    // Recovers the definition stored in the directory into the FSM, or starts the directory with a
+    // snapshot of the FSM's current definition if it holds none. Called with the FSM locked.
+    static Journal open(FSM fsm, Path directory, long commitIntervalMillis, long compactBytes) throws IOException {
+        Files.createDirectories(directory);
+        long snapshot = -1;
+        long journal = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                snapshot = Math.max(snapshot, generationOf(file, "snapshot-", ".fsm"));
+                journal = Math.max(journal, generationOf(file, "journal-", ".log"));
+            }
+        }
+
+        Journal opened = new Journal(directory, commitIntervalMillis, compactBytes);
+        if (snapshot < 0 && journal < 0) {
+            opened.generation = 0;
+            opened.log = FileChannel.open(opened.logFile(0), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            opened.start();
+            opened.compact(fsm);
+            return opened;
+        }
+
+        opened.recovered = true;
+        opened.generation = Math.max(snapshot, 0);
+        if (snapshot >= 0) {
+            BinaryFormat.read(fsm, opened.snapshotFile(snapshot));
+        } else {
+            fsm.clear();
+        }
+        Path logFile = opened.logFile(opened.generation);
+        opened.log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long valid = opened.replay(fsm);
+        if (valid < opened.log.size()) {
+            opened.log.truncate(valid);
+            opened.log.force(true);
+        }
+        opened.log.position(valid);
+        opened.logBytes = valid;
+        opened.deleteOlderThan(opened.generation);
+        opened.start();
+        return opened;
+    }
+
+    private static long generationOf(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(suffix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Path snapshotFile(long n) {
+        return directory.resolve("snapshot-" + n + ".fsm");
+    }
+
+    private Path logFile(long n) {
+        return directory.resolve("journal-" + n + ".log");
+    }
+
+    private void start() {
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    // Applies the records of the current journal file; returns the length of its intact prefix.
+    private long replay(FSM fsm) throws IOException {
+        if (log.size() > Integer.MAX_VALUE) {
+            throw new IOException("Journal is larger than 2 GB.");
+        }
+        ByteBuffer in = ByteBuffer.allocate((int) log.size());
+        while (in.hasRemaining() && log.read(in, in.position()) >= 0) {
+            // read the whole file
+        }
+        in.flip();
+        long valid = 0;
+        while (in.remaining() >= HEADER) {
+            int length = in.getInt(in.position());
+            int checksum = in.getInt(in.position() + 4);
+            if (length < 1 || length > in.remaining() - HEADER) {
+                break;
+            }
+            crc.reset();
+            crc.update(in.array(), in.position() + HEADER, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            in.position(in.position() + HEADER);
+            ByteBuffer record = in.slice().limit(length);
+            in.position(in.position() + length);
+            apply(fsm, record);
+            valid = in.position();
+            replayed++;
+        }
+        return valid;
+    }
+
+    private static void apply(FSM fsm, ByteBuffer record) throws IOException {
+        byte op = record.get();
+        String[] args = new String[3];
+        int count = 0;
+        while (record.hasRemaining() && count < args.length) {
+            byte[] bytes = new byte[record.getShort() & 0xFFFF];
+            record.get(bytes);
+            args[count++] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        switch (op) {
+            case CLEAR:
+                fsm.clear();
+                break;
+            case SYMBOL:
+                fsm.addSymbol(args[0]);
+                break;
+            case STATE:
+                fsm.addState(args[0]);
+                break;
+            case INITIAL:
+                fsm.setInitialState(args[0]);
+                break;
+            case FINAL:
+                fsm.addFinalState(args[0]);
+                break;
+            case TRANSITION:
+                fsm.addTransition(args[0], args[1], args[2]);
+                break;
+            case TARGET:
+                fsm.addTransitionTarget(args[0], args[1], args[2]);
+                break;
+            case MINIMIZE:
+                fsm.minimize();
+                break;
+            case IMAGE:
+                fsm.mapImage(Path.of(args[0]));
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + op + ".");
+        }
+    }
+
+    // Queues one record; it is durable after the next group commit. Called with the FSM locked.
+    synchronized void append(byte op, String... args) {
+        if (closed || failure != null) {
+            return;
+        }
+        byte[][] encoded = new byte[args.length][];
+        int length = 1;
+        for (int i = 0; i < args.length; i++) {
+            encoded[i] = args[i].getBytes(StandardCharsets.UTF_8);
+            length += 2 + encoded[i].length;
+        }
+        if (pending.remaining() < HEADER + length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER + length));
+            pending.flip();
+            pending = grown.put(pending);
+        }
+        int start = pending.position();
+        pending.position(start + HEADER).put(op);
+        for (byte[] arg : encoded) {
+            pending.putShort((short) arg.length).put(arg);
+        }
+        crc.reset();
+        crc.update(pending.array(), start + HEADER, length);
+        pending.putInt(start, length).putInt(start + 4, (int) crc.getValue());
+        appended++;
+        logBytes += HEADER + length;
+        if (start == 0) {
+            notifyAll();
+        }
+    }
+
+    synchronized boolean needsCompaction() {
+        return logBytes >= compactBytes;
+    }
+
+    // Blocks until every record appended so far is on disk.
+    public synchronized void sync() throws IOException {
+        long target = appended;
+        while (durable < target && failure == null && !closed) {
+            syncRequested = true;
+            notifyAll();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the journal.");
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Writes a snapshot of the FSM and starts a new, empty journal. Called with the FSM locked, so no
+    // record can be appended meanwhile.
+    void compact(FSM fsm) throws IOException {
+        sync();
+        long next = generation + 1;
+        Path temporary = directory.resolve("snapshot-" + next + ".tmp");
+        fsm.writeBinary(temporary);
+        try (FileChannel written = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            written.force(true);
+        }
+        Files.move(temporary, snapshotFile(next), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        FileChannel fresh = FileChannel.open(logFile(next), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        forceDirectory();
+        FileChannel old;
+        synchronized (this) {
+            old = log;
+            log = fresh;
+            generation = next;
+            logBytes = 0;
+            compactions++;
+        }
+        old.close();
+        deleteOlderThan(next);
+    }
+
+    private void deleteOlderThan(long current) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                long n = Math.max(generationOf(file, "snapshot-", ".fsm"), generationOf(file, "journal-", ".log"));
+                if ((n >= 0 && n < current) || generationOf(file, "snapshot-", ".tmp") >= 0) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    // Makes the rename of a new snapshot durable; not every platform can open a directory for this.
+    private void forceDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer batch;
+            FileChannel channel;
+            long upTo;
+            synchronized (this) {
+                try {
+                    while (!closed && pending.position() == 0) {
+                        wait();
+                    }
+                    // Group window: let more records join unless someone is waiting for them.
+                    long deadline = System.nanoTime() + commitIntervalNanos;
+                    for (long left = commitIntervalNanos; !closed && !syncRequested && left > 0; left = deadline - System.nanoTime()) {
+                        TimeUnit.NANOSECONDS.timedWait(this, left);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                syncRequested = false;
+                if (pending.position() == 0) {
+                    notifyAll();
+                    return;                 // closed and drained
+                }
+                batch = pending;
+                pending = spare;
+                channel = log;
+                upTo = appended;
+            }
+
+            IOException error = null;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            synchronized (this) {
+                spare = batch.clear();
+                if (error != null) {
+                    failure = error;
+                    System.out.println("Error: Journal write failed, further changes are not persisted. " + error.getMessage());
+                } else {
+                    durable = upTo;
+                    commits++;
+                }
+                notifyAll();
+                if (error != null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Commits what is pending and stops the writer.
+    void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            log.close();
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // already shutting down
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            System.out.println("Error: Could not close journal. " + e.getMessage());
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public synchronized long generation() {
+        return generation;
+    }
+
+    // Records appended since the journal was opened, and how many of them are on disk.
+    public synchronized long appended() {
+        return appended;
+    }
+
+    public synchronized long durable() {
+        return durable;
+    }
+
+    // Whether the directory held a definition when the journal was opened.
+    public synchronized boolean recovered() {
+        return recovered;
+    }
+
+    // Records applied from the journal file when it was opened.
+    public synchronized long replayed() {
+        return replayed;
+    }
+
+    public synchronized long commits() {
+        return commits;
+    }
+
+    public synchronized long compactions() {
+        return compactions;
+    }
+
+    public synchronized long journalBytes() {
+        return logBytes;
+    }
+}
@@ -0,0 +1,411 @@
+package fsm.core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/*
+ * Executes a nondeterministic FSM by subset construction on demand, in the style of RE2: a DFA state is
+ * an epsilon-closed set of FSM states, created the first time a run reaches it, and each of its
+ * transitions is computed the first time it is taken. Built states live in a cache with a byte budget;
+ * when the budget is exceeded the cache is flushed and refilled from the state the run is in.
+ *
+ * Every thread has its own cache, so state indexes returned by this engine are only valid on the thread
+ * that received them and only until that thread's next step (see Automaton.isLazy).
+ *
+ * The searching() variant finds matches anywhere in a text: it behaves as if the initial state had a
+ * self-loop on every character, so a DFA state is the set of FSM states reached by a non-empty path
+ * that may start at any earlier position, and it is accepting wherever some accepted substring ends.
+ */
+public final class LazyDfa implements Automaton {
+    static final long DEFAULT_BUDGET = 8L << 20;
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private final Automaton table;          // names, symbols, finals and the first target of every pair
+    private final int[][] moves;            // state * symbolCount + symbol -> every target, null if none
+    private final int[][] epsilon;          // state -> epsilon targets, null if none
+    private final long budget;
+    private final boolean search;           // the initial closure joins every step, the empty set is a state
+    private final ThreadLocal<Cache> caches = ThreadLocal.withInitial(Cache::new);
+    private final LongAdder statesBuilt = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    LazyDfa(Automaton table, Collection<Transition> alternatives, long budget) {
+        this.table = table;
+        this.budget = budget;
+        this.search = false;
+        int states = table.stateCount();
+        int symbols = table.symbolCount();
+        moves = new int[states * symbols][];
+        for (int s = 0; s < states; s++) {
+            for (int c = 0; c < symbols; c++) {
+                int target = table.next(s, c);
+                if (target >= 0) {
+                    moves[s * symbols + c] = new int[] {target};
+                }
+            }
+        }
+        Map<String, Integer> symbolIndex = new HashMap<>();
+        for (int c = 0; c < symbols; c++) {
+            symbolIndex.put(table.symbolName(c), c);
+        }
+        Map<String, Integer> stateIndex = new HashMap<>();
+        for (int s = 0; s < states && !alternatives.isEmpty(); s++) {
+            stateIndex.put(table.stateName(s), s);
+        }
+        epsilon = new int[states][];
+        for (Transition t : alternatives) {
+            int from = stateIndex.get(t.getCurrentState());
+            int to = stateIndex.get(t.getNextState());
+            if (t.isEpsilon()) {
+                epsilon[from] = append(epsilon[from], to);
+            } else {
+                int pair = from * symbols + symbolIndex.get(t.getSymbol());
+                moves[pair] = append(moves[pair], to);
+            }
+        }
+    }
+
+    private LazyDfa(LazyDfa anchored) {
+        this.table = anchored.table;
+        this.moves = anchored.moves;
+        this.epsilon = anchored.epsilon;
+        this.budget = anchored.budget;
+        this.search = true;
+    }
+
+    // Same machine, unanchored: runs from initialState() accept wherever an accepted substring ends.
+    LazyDfa searching() {
+        return search ? this : new LazyDfa(this);
+    }
+
+    private static int[] append(int[] targets, int target) {
+        if (targets == null) {
+            return new int[] {target};
+        }
+        int[] grown = Arrays.copyOf(targets, targets.length + 1);
+        grown[targets.length] = target;
+        return grown;
+    }
+
+    @Override
+    public boolean isLazy() {
+        return true;
+    }
+
+    @Override
+    public int initialState() {
+        return caches.get().initial();
+    }
+
+    @Override
+    public int run(CharSequence input) {
+        Cache cache = caches.get();
+        int state = cache.initial();
+        if (state < 0) {
+            return NO_INITIAL_STATE;
+        }
+        return cache.run(state, input, 0, input.length());
+    }
+
+    @Override
+    public int run(int state, CharSequence input, int from, int to) {
+        return caches.get().run(state, input, from, to);
+    }
+
+    @Override
+    public int symbolIndex(char ch) {
+        return table.symbolIndex(ch);
+    }
+
+    @Override
+    public int next(int state, int symbol) {
+        Cache cache = caches.get();
+        int target = cache.next[state * cache.symbols + symbol];
+        return target != UNKNOWN ? target : cache.step(state, symbol);
+    }
+
+    @Override
+    public boolean isFinal(int state) {
+        return caches.get().accepting[state];
+    }
+
+    // The FSM state name when the set has one member, otherwise {A,B,...}.
+    @Override
+    public String stateName(int state) {
+        int[] set = caches.get().states[state].set;
+        if (set.length == 1) {
+            return table.stateName(set[0]);
+        }
+        StringBuilder name = new StringBuilder("{");
+        for (int i = 0; i < set.length; i++) {
+            name.append(i == 0 ? "" : ",").append(table.stateName(set[i]));
+        }
+        return name.append('}').toString();
+    }
+
+    @Override
+    public String symbolName(int symbol) {
+        return table.symbolName(symbol);
+    }
+
+    // DFA states currently cached for the calling thread.
+    @Override
+    public int stateCount() {
+        return caches.get().count;
+    }
+
+    @Override
+    public int symbolCount() {
+        return table.symbolCount();
+    }
+
+    // Sorted FSM states of a DFA state; unlike the index, the set stays valid on every thread.
+    int[] stateSet(int state) {
+        return caches.get().states[state].set.clone();
+    }
+
+    // DFA state of an epsilon-closed set of FSM states on the calling thread; -1 for the empty set unless searching.
+    int stateOf(int[] set) {
+        return set.length == 0 && !search ? -1 : caches.get().intern(set.clone());
+    }
+
+    // Runs bytes[from, to) as Latin-1 characters and reports base + i + 1 for every byte i that leaves the
+    // run in an accepting state. A searching run restarts after invalid symbols; an anchored one stops.
+    // Returns the state after the last byte, or -1 once an anchored run has no state left.
+    int scan(int state, ByteBuffer bytes, int from, int to, long base, LongConsumer matches) {
+        return caches.get().scan(state, bytes, from, to, base, matches);
+    }
+
+    public long budget() {
+        return budget;
+    }
+
+    // DFA states created on all threads since the engine was built, flushed ones included.
+    public long statesBuilt() {
+        return statesBuilt.sum();
+    }
+
+    public long flushes() {
+        return flushes.sum();
+    }
+
+    private static final class DState {
+        final int[] set;                    // sorted FSM state indexes
+
+        DState(int[] set) {
+            this.set = set;
+        }
+    }
+
+    private static final class SetKey {
+        final int[] set;
+        final int hash;
+
+        SetKey(int[] set) {
+            this.set = set;
+            this.hash = Arrays.hashCode(set);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof SetKey && Arrays.equals(set, ((SetKey) other).set);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final class Cache {
+        final int symbols = table.symbolCount();
+        DState[] states = new DState[16];
+        boolean[] accepting = new boolean[16];
+        int[] next = newTable(16);          // state * symbols + symbol -> DFA state, -1 for the empty set, UNKNOWN if not built yet
+        int count;
+        final Map<SetKey, Integer> index = new HashMap<>();
+        long bytes;
+        int initial = UNKNOWN;
+        final int[] stamp = new int[table.stateCount()];    // visited marks for building one set
+        int mark;
+        final int[] stack = new int[table.stateCount()];
+        final int[] scratch = new int[table.stateCount()];
+        final int[] restart = search && table.initialState() >= 0
+                ? closure(new int[] {table.initialState()}, 1) : new int[0];
+
+        // A search starts from the empty set: nothing has been read, so no substring has ended yet.
+        int initial() {
+            if (initial == UNKNOWN) {
+                int start = table.initialState();
+                initial = start < 0 ? -1 : intern(search ? new int[0] : closure(new int[] {start}, 1));
+            }
+            return initial;
+        }
+
+        int run(int state, CharSequence input, int from, int to) {
+            for (int i = from; i < to; i++) {
+                int symbol = table.symbolIndex(input.charAt(i));
+                if (symbol < 0) {
+                    return INVALID_SYMBOL;
+                }
+                int target = next[state * symbols + symbol];
+                if (target == UNKNOWN) {
+                    target = step(state, symbol);
+                }
+                if (target < 0) {
+                    return NO_TRANSITION;
+                }
+                state = target;
+            }
+            return state;
+        }
+
+        int scan(int state, ByteBuffer bytes, int from, int to, long base, LongConsumer matches) {
+            for (int i = from; i < to; i++) {
+                int symbol = table.symbolIndex((char) (bytes.get(i) & 0xFF));
+                int target;
+                if (symbol < 0) {
+                    target = search ? initial() : -1;
+                } else {
+                    target = next[state * symbols + symbol];
+                    if (target == UNKNOWN) {
+                        target = step(state, symbol);
+                    }
+                }
+                if (target < 0) {
+                    return -1;
+                }
+                state = target;
+                if (accepting[state]) {
+                    matches.accept(base + i + 1);
+                }
+            }
+            return state;
+        }
+
+        private int[] newTable(int capacity) {
+            int[] created = new int[capacity * symbols];
+            Arrays.fill(created, UNKNOWN);
+            return created;
+        }
+
+        // Builds the transition; may flush the cache, after which only the returned index is valid.
+        int step(int state, int symbol) {
+            DState source = states[state];
+            int[] targets = scratch;
+            int size = 0;
+            mark++;
+            size = move(source.set, symbol, targets, size);
+            if (search) {
+                size = move(restart, symbol, targets, size);
+            }
+            if (size == 0 && !search) {
+                next[state * symbols + symbol] = -1;
+                return -1;
+            }
+            int[] set = closureMarked(targets, size);
+            Integer known = index.get(new SetKey(set));
+            if (known != null) {
+                next[state * symbols + symbol] = known;
+                return known;
+            }
+            if (bytes > budget) {
+                flush();
+                return intern(set);
+            }
+            int target = intern(set);
+            next[state * symbols + symbol] = target;
+            return target;
+        }
+
+        // Appends the unmarked targets of set on symbol to targets[size, ...) and returns the new size.
+        private int move(int[] set, int symbol, int[] targets, int size) {
+            for (int s : set) {
+                int[] next = moves[s * symbols + symbol];
+                if (next != null) {
+                    for (int t : next) {
+                        if (stamp[t] != mark) {
+                            stamp[t] = mark;
+                            targets[size++] = t;
+                        }
+                    }
+                }
+            }
+            return size;
+        }
+
+        private int[] closure(int[] start, int size) {
+            mark++;
+            int[] targets = Arrays.copyOf(start, table.stateCount());
+            for (int i = 0; i < size; i++) {
+                stamp[targets[i]] = mark;
+            }
+            return closureMarked(targets, size);
+        }
+
+        // Adds everything reachable by epsilon moves to targets[0, size), whose members are marked already.
+        private int[] closureMarked(int[] targets, int size) {
+            int top = 0;
+            for (int i = 0; i < size; i++) {
+                if (epsilon[targets[i]] != null) {
+                    stack[top++] = targets[i];
+                }
+            }
+            while (top > 0) {
+                for (int t : epsilon[stack[--top]]) {
+                    if (stamp[t] != mark) {
+                        stamp[t] = mark;
+                        targets[size++] = t;
+                        if (epsilon[t] != null) {
+                            stack[top++] = t;
+                        }
+                    }
+                }
+            }
+            int[] set = Arrays.copyOf(targets, size);
+            Arrays.sort(set);
+            return set;
+        }
+
+        int intern(int[] set) {
+            SetKey key = new SetKey(set);
+            Integer known = index.get(key);
+            if (known != null) {
+                return known;
+            }
+            boolean isAccepting = false;
+            for (int s : set) {
+                isAccepting |= table.isFinal(s);
+            }
+            if (count == states.length) {
+                states = Arrays.copyOf(states, count * 2);
+                accepting = Arrays.copyOf(accepting, count * 2);
+                int[] grown = newTable(count * 2);
+                System.arraycopy(next, 0, grown, 0, next.length);
+                next = grown;
+            }
+            states[count] = new DState(set);
+            accepting[count] = isAccepting;
+            index.put(key, count);
+            bytes += 96 + 4L * set.length + 4L * symbols;
+            statesBuilt.increment();
+            return count++;
+        }
+
+        private void flush() {
+            states = new DState[16];
+            accepting = new boolean[16];
+            next = newTable(16);
+            count = 0;
+            index.clear();
+            bytes = 0;
+            initial = UNKNOWN;
+            flushes.increment();
+        }
+    }
+}
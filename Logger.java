@@ -3,10 +3,20 @@ package fsm.core.io;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 public class Logger {
+    public enum Backpressure { BLOCK, DROP }      // What log() does when the async buffer is full.
+
+    private static final int BUFFER_CAPACITY = 8192;
+    private static final int DRAIN_BATCH = 1024;
+
     private BufferedWriter writer;
     private boolean isLogging = false;
+    private volatile AsyncWriter async;           // null in synchronous mode
+    private final AtomicLong dropped = new AtomicLong();
 
     public void startLogging(String filename) {       // Starts logging to the given filename.
         stopLogging(); // Close previous log if any
@@ -19,8 +29,28 @@ public class Logger {
         }
     }
 
+    // Starts logging through a background writer that flushes at most once per flush interval.
+    public void startAsyncLogging(String filename, long flushIntervalMillis, Backpressure backpressure) {
+        stopLogging();
+        try {
+            writer = new BufferedWriter(new FileWriter(filename, false), 1 << 16);
+            dropped.set(0);
+            async = new AsyncWriter(writer, TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis)), backpressure);
+            isLogging = true;
+            System.out.println("Started asynchronous logging to '" + filename + "' (flush every "
+                    + Math.max(1, flushIntervalMillis) + " ms, " + backpressure + " when full)");
+        } catch (IOException e) {
+            System.out.println("Error: Could not start logging. " + e.getMessage());
+        }
+    }
+
     public void stopLogging() {               // Stops logging (closes the file).
         if (isLogging) {
+            AsyncWriter pending = async;
+            if (pending != null) {
+                async = null;
+                pending.drainAndStop();       // Everything logged so far reaches the file first.
+            }
             try {
                 writer.close();
             } catch (IOException e) {
@@ -28,11 +58,17 @@ public class Logger {
             }
             isLogging = false;
             writer = null;
-            System.out.println("Stopped logging.");
+            long lost = dropped.get();
+            System.out.println(lost > 0 ? "Stopped logging. " + lost + " messages were dropped." : "Stopped logging.");
         }
     }
 
     public void log(String message) {           // Logs a message to the file if logging is active.
+        AsyncWriter background = async;
+        if (background != null) {
+            background.enqueue(message);
+            return;
+        }
         if (isLogging && writer != null) {
             try {
                 writer.write(message);
@@ -47,4 +83,107 @@ public class Logger {
     public boolean isLogging() {      // Checks if logging is active.
         return isLogging;
     }
+
+    public long droppedMessages() {     // Messages discarded by the DROP policy since logging started.
+        return dropped.get();
+    }
+
+    private final class AsyncWriter implements Runnable {
+        private final MpscRingBuffer buffer = new MpscRingBuffer(BUFFER_CAPACITY);
+        private final BufferedWriter out;
+        private final long flushIntervalNanos;
+        private final Backpressure backpressure;
+        private final Thread thread;
+        private volatile boolean running = true;
+        private boolean failed = false;
+
+        AsyncWriter(BufferedWriter out, long flushIntervalNanos, Backpressure backpressure) {
+            this.out = out;
+            this.flushIntervalNanos = flushIntervalNanos;
+            this.backpressure = backpressure;
+            thread = new Thread(this, "fsm-log-writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void enqueue(String message) {
+            while (!buffer.offer(message)) {
+                if (backpressure == Backpressure.DROP || !running) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(10_000);
+            }
+            if (buffer.size() >= buffer.capacity() / 2) {
+                LockSupport.unpark(thread);   // Do not wait for the timer when the buffer fills up.
+            }
+        }
+
+        void drainAndStop() {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            long lastFlush = System.nanoTime();
+            boolean dirty = false;
+            while (true) {
+                boolean stopping = !running;           // read before draining so nothing is left behind
+                int count = buffer.drain(this::write, DRAIN_BATCH);
+                dirty |= count > 0;
+                long now = System.nanoTime();
+                if (dirty && now - lastFlush >= flushIntervalNanos) {
+                    flush();
+                    dirty = false;
+                    lastFlush = now;
+                }
+                if (count == 0) {
+                    if (stopping) {
+                        if (buffer.size() == 0) {
+                            flush();
+                            return;
+                        }
+                        Thread.onSpinWait();      // a producer claimed a slot but has not published it yet
+                        continue;
+                    }
+                    LockSupport.parkNanos(dirty ? flushIntervalNanos - (now - lastFlush) : flushIntervalNanos);
+                }
+            }
+        }
+
+        private void write(String message) {
+            if (failed) {
+                return;
+            }
+            try {
+                out.write(message);
+                out.newLine();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void flush() {
+            if (failed) {
+                return;
+            }
+            try {
+                out.flush();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(IOException e) {
+            failed = true;
+            System.out.println("Error: Could not write to log file. " + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,39 @@
+package fsm.core.io;
+
+import fsm.core.TraceSink;
+
+// Collects the trace of one execution and writes it to the log as a single line.
+public class LoggerTraceSink implements TraceSink {
+    private final Logger logger;
+    private final StringBuilder line = new StringBuilder();
+
+    public LoggerTraceSink(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public void state(String state) {
+        line.append(state).append(' ');
+    }
+
+    @Override
+    public void invalidSymbol(char symbol) {
+        flush("Error: Invalid symbol '" + String.valueOf(symbol).toUpperCase() + "' encountered.");
+    }
+
+    @Override
+    public void noTransition(String state, String symbol) {
+        flush("No valid transition from state '" + state + "' using symbol '" + symbol + "'.");
+    }
+
+    @Override
+    public void result(boolean accepted) {
+        flush(accepted ? "YES" : "NO");
+    }
+
+    private void flush(String outcome) {
+        line.append("-> ").append(outcome);
+        logger.log(line.toString());
+        line.setLength(0);
+    }
+}
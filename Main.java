@@ -1,8 +1,10 @@
 
 import fsm.core.FSM;
 import fsm.core.io.CommandParser;
+import fsm.core.io.FsmServer;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Scanner;
@@ -20,7 +22,9 @@ public class Main {
         FSM fsm = new FSM();
         CommandParser parser = new CommandParser(fsm);
 
-        if (args.length >= 1) {
+        if (args.length >= 1 && args[0].equals("--serve")) {
+            serve(parser, fsm, args);
+        } else if (args.length >= 1) {
             String filename = args[0];
             File file = new File(filename);
             if (!file.exists() || !file.isFile() || !file.canRead()) {
@@ -28,21 +32,8 @@ public class Main {
                 System.exit(1);
             }
 
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                StringBuilder commandBuffer = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    line = line.trim();
-                    if (line.startsWith(";") || line.isEmpty()) {
-                        continue;
-                    }
-                    commandBuffer.append(line).append(" ");
-                    if (line.contains(";")) {
-                        String fullCommand = commandBuffer.toString();
-                        parser.parse(fullCommand);
-                        commandBuffer.setLength(0);
-                    }
-                }
+            try (Reader reader = new FileReader(file, StandardCharsets.UTF_8)) {
+                parser.parseScript(reader);
             } catch (IOException e) {
                 System.out.println("Error reading file: " + e.getMessage());
             }
@@ -58,4 +49,33 @@ public class Main {
             }
         }
     }
+
+    // --serve <port|unix:path> <machine file>: answers execution requests until the process is stopped.
+    private static void serve(CommandParser parser, FSM fsm, String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: Main --serve <port|unix:path> <machine file>");
+            System.exit(1);
+        }
+        parser.load(args[2]);
+        if (fsm.getInitialState() == null) {
+            System.out.println("Error: '" + args[2] + "' defines no initial state.");
+            System.exit(1);
+        }
+        try {
+            FsmServer server = FsmServer.open(args[1], fsm.snapshot());
+            System.out.println("Serving '" + args[2] + "' on " + server.address()
+                    + (server.usesVirtualThreads() ? " (virtual threads)" : " (platform threads)"));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();         // also removes a Unix-domain socket file
+                } catch (IOException e) {
+                    // stopping anyway
+                }
+            }));
+            server.serve();
+        } catch (IOException e) {
+            System.out.println("Error: Could not serve. " + e.getMessage());
+            System.exit(1);
+        }
+    }
 }
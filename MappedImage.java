@@ -0,0 +1,261 @@
+package fsm.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Compiled FSM image that is executed straight from a memory-mapped file.
+ * Layout (big-endian ints):
+ *   0   magic "FSMI", version, state count, symbol count, initial state (-1 if none),
+ *       transition count, finals offset, table offset, strings offset
+ *   36  alphabet map: 256 shorts, symbol index per char (-1 if not a symbol)
+ *   ... final-state bitmap, (state count + 7) / 8 bytes
+ *   ... next-state table, state count * symbol count ints (-1 if undefined), 4-byte aligned
+ *   ... string index: (symbol count + state count) int offsets into the string data,
+ *       followed by the strings as short length + UTF-8 bytes, symbols first
+ */
+public final class MappedImage implements Automaton {
+    static final int MAGIC = 0x46534D49;
+    static final int VERSION = 1;
+    private static final int ALPHABET_OFFSET = 36;
+    private static final int ALPHABET_SIZE = 256;
+
+    private final MappedByteBuffer image;
+    private final short[] symbolOf = new short[ALPHABET_SIZE];
+    private final int stateCount;
+    private final int symbolCount;
+    private final int initial;
+    private final int transitionCount;
+    private final int finalsOffset;
+    private final int tableOffset;
+    private final int stringsOffset;
+
+    private MappedImage(MappedByteBuffer image) throws IOException {
+        this.image = image;
+        if (image.getInt(0) != MAGIC) {
+            throw new IOException("Not a compiled FSM image.");
+        }
+        if (image.getInt(4) != VERSION) {
+            throw new IOException("Unsupported FSM image version " + image.getInt(4) + ".");
+        }
+        stateCount = image.getInt(8);
+        symbolCount = image.getInt(12);
+        initial = image.getInt(16);
+        transitionCount = image.getInt(20);
+        finalsOffset = image.getInt(24);
+        tableOffset = image.getInt(28);
+        stringsOffset = image.getInt(32);
+        for (int c = 0; c < ALPHABET_SIZE; c++) {
+            symbolOf[c] = image.getShort(ALPHABET_OFFSET + 2 * c);
+        }
+    }
+
+    public static boolean isImage(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the magic is complete or the file ends
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static MappedImage open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("FSM image is larger than 2 GB.");
+            }
+            // The mapping stays valid after the channel is closed.
+            return new MappedImage(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static void write(Automaton table, int transitionCount, Path file) throws IOException {
+        int states = table.stateCount();
+        int symbols = table.symbolCount();
+        long tableBytes = 4L * states * symbols;
+        int finalsOffset = ALPHABET_OFFSET + 2 * ALPHABET_SIZE;
+        int tableOffset = (finalsOffset + (states + 7) / 8 + 3) & ~3;
+
+        byte[][] strings = new byte[symbols + states][];
+        for (int i = 0; i < symbols; i++) {
+            strings[i] = table.symbolName(i).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int i = 0; i < states; i++) {
+            strings[symbols + i] = table.stateName(i).getBytes(StandardCharsets.UTF_8);
+        }
+        long stringsOffset = tableOffset + tableBytes;
+        long size = stringsOffset + 4L * strings.length;
+        for (byte[] s : strings) {
+            size += 2 + s.length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("FSM is too large for an image (" + size + " bytes).");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(tableOffset);
+        header.putInt(MAGIC).putInt(VERSION).putInt(states).putInt(symbols).putInt(table.initialState())
+                .putInt(transitionCount).putInt(finalsOffset).putInt(tableOffset).putInt((int) stringsOffset);
+        for (char c = 0; c < ALPHABET_SIZE; c++) {
+            header.putShort((short) table.symbolIndex(c));
+        }
+        for (int i = 0; i < states; i++) {
+            if (table.isFinal(i)) {
+                int at = finalsOffset + (i >>> 3);
+                header.put(at, (byte) (header.get(at) | (1 << (i & 7))));
+            }
+        }
+        header.position(header.capacity()).flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+            for (int s = 0; s < states; s++) {
+                for (int c = 0; c < symbols; c++) {
+                    if (!chunk.hasRemaining()) {
+                        writeFully(channel, chunk.flip());
+                        chunk.clear();
+                    }
+                    chunk.putInt(table.next(s, c));
+                }
+            }
+            int offset = 4 * strings.length;
+            for (byte[] s : strings) {
+                if (!chunk.hasRemaining()) {
+                    writeFully(channel, chunk.flip());
+                    chunk.clear();
+                }
+                chunk.putInt(offset);
+                offset += 2 + s.length;
+            }
+            for (byte[] s : strings) {
+                if (chunk.remaining() < 2 + s.length) {
+                    writeFully(channel, chunk.flip());
+                    chunk.clear();
+                }
+                chunk.putShort((short) s.length).put(s);
+            }
+            writeFully(channel, chunk.flip());
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    @Override
+    public int run(CharSequence input) {
+        int state = initial;
+        if (state < 0) {
+            return NO_INITIAL_STATE;
+        }
+        return run(state, input, 0, input.length());
+    }
+
+    @Override
+    public int run(int state, CharSequence input, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char ch = input.charAt(i);
+            int symbol = ch < ALPHABET_SIZE ? symbolOf[ch] : -1;
+            if (symbol < 0) {
+                return INVALID_SYMBOL;
+            }
+            state = image.getInt(tableOffset + 4 * (state * symbolCount + symbol));
+            if (state < 0) {
+                return NO_TRANSITION;
+            }
+        }
+        return state;
+    }
+
+    @Override
+    public int initialState() {
+        return initial;
+    }
+
+    @Override
+    public int symbolIndex(char ch) {
+        return ch < ALPHABET_SIZE ? symbolOf[ch] : -1;
+    }
+
+    @Override
+    public int next(int state, int symbol) {
+        return image.getInt(tableOffset + 4 * (state * symbolCount + symbol));
+    }
+
+    @Override
+    public boolean isFinal(int state) {
+        return (image.get(finalsOffset + (state >>> 3)) & (1 << (state & 7))) != 0;
+    }
+
+    @Override
+    public String stateName(int state) {
+        return string(symbolCount + state);
+    }
+
+    @Override
+    public String symbolName(int symbol) {
+        return string(symbol);
+    }
+
+    @Override
+    public int stateCount() {
+        return stateCount;
+    }
+
+    @Override
+    public int symbolCount() {
+        return symbolCount;
+    }
+
+    public int transitionCount() {
+        return transitionCount;
+    }
+
+    private String string(int index) {
+        int at = stringsOffset + image.getInt(stringsOffset + 4 * index);
+        byte[] bytes = new byte[image.getShort(at)];
+        image.get(at + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Copies the image into an on-heap definition. Transitions come out in state order.
+    void materialize(FSM fsm) {
+        List<String> symbols = new ArrayList<>(symbolCount);
+        for (int i = 0; i < symbolCount; i++) {
+            symbols.add(symbolName(i));
+        }
+        String[] states = new String[stateCount];
+        List<String> finalStates = new ArrayList<>();
+        for (int i = 0; i < stateCount; i++) {
+            states[i] = stateName(i);
+            if (isFinal(i)) {
+                finalStates.add(states[i]);
+            }
+        }
+        List<Transition> transitions = new ArrayList<>(transitionCount);
+        for (int s = 0; s < stateCount; s++) {
+            for (int c = 0; c < symbolCount; c++) {
+                int target = next(s, c);
+                if (target >= 0) {
+                    transitions.add(new Transition(symbols.get(c), states[s], states[target]));
+                }
+            }
+        }
+        fsm.define(symbols, Arrays.asList(states), finalStates, transitions, initial < 0 ? null : states[initial]);
+    }
+}
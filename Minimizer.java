@@ -0,0 +1,174 @@
+package fsm.core;
+
+import java.util.Arrays;
+
+// Hopcroft partition refinement over an FSM's transition table, O(n * k * log n).
+final class Minimizer {
+    private Minimizer() {}
+
+    // For every state, the index of the state that represents its equivalence class,
+    // or -1 if the state is unreachable or can never lead to acceptance.
+    static int[] representatives(Automaton table) {
+        int n = table.stateCount();
+        int k = table.symbolCount();
+        int[] rep = new int[n];
+        Arrays.fill(rep, -1);
+        int initial = table.initialState();
+        if (initial < 0) {
+            return rep;
+        }
+
+        // Number the reachable states densely; dense index m is an implicit sink for missing transitions.
+        int[] dense = new int[n];
+        Arrays.fill(dense, -1);
+        int[] original = new int[n];
+        int m = 0;
+        dense[initial] = m;
+        original[m++] = initial;
+        for (int i = 0; i < m; i++) {
+            for (int c = 0; c < k; c++) {
+                int t = table.next(original[i], c);
+                if (t >= 0 && dense[t] < 0) {
+                    dense[t] = m;
+                    original[m++] = t;
+                }
+            }
+        }
+        int sink = m;
+        int size = m + 1;
+
+        // Inverse transitions per symbol, CSR layout: predecessors of t on c are inv[invStart[c * size + t] ..].
+        int[] delta = new int[size * k];
+        int[] invStart = new int[size * k + 1];
+        for (int s = 0; s < size; s++) {
+            for (int c = 0; c < k; c++) {
+                int t = s == sink ? -1 : table.next(original[s], c);
+                int target = t < 0 ? sink : dense[t];
+                delta[s * k + c] = target;
+                invStart[c * size + target + 1]++;
+            }
+        }
+        for (int i = 0; i < size * k; i++) {
+            invStart[i + 1] += invStart[i];
+        }
+        int[] inv = new int[size * k];
+        int[] fill = Arrays.copyOf(invStart, size * k);
+        for (int s = 0; s < size; s++) {
+            for (int c = 0; c < k; c++) {
+                inv[fill[c * size + delta[s * k + c]]++] = s;
+            }
+        }
+
+        // Partition: elements of block b are elems[first[b] .. end[b]), marked ones moved to the front.
+        int[] elems = new int[size];
+        int[] loc = new int[size];
+        int[] blockOf = new int[size];
+        int[] first = new int[size];
+        int[] end = new int[size];
+        int[] marked = new int[size];
+        boolean[] pending = new boolean[size];
+        int[] worklist = new int[size];
+        int pendingCount = 0;
+        int blocks = 0;
+
+        int pos = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            int start = pos;
+            for (int s = 0; s < size; s++) {
+                boolean accepting = s != sink && table.isFinal(original[s]);
+                if (accepting == (pass == 0)) {
+                    elems[pos] = s;
+                    loc[s] = pos++;
+                    blockOf[s] = blocks;
+                }
+            }
+            if (pos > start) {
+                first[blocks] = start;
+                end[blocks] = pos;
+                pending[blocks] = true;
+                worklist[pendingCount++] = blocks++;
+            }
+        }
+
+        int[] splitter = new int[size];
+        int[] touched = new int[size];
+        while (pendingCount > 0) {
+            int a = worklist[--pendingCount];
+            pending[a] = false;
+            int splitterSize = end[a] - first[a];
+            System.arraycopy(elems, first[a], splitter, 0, splitterSize);
+
+            for (int c = 0; c < k; c++) {
+                int touchedCount = 0;
+                for (int j = 0; j < splitterSize; j++) {
+                    int t = splitter[j];
+                    for (int i = invStart[c * size + t], e = invStart[c * size + t + 1]; i < e; i++) {
+                        int q = inv[i];
+                        int b = blockOf[q];
+                        int mark = first[b] + marked[b];
+                        if (loc[q] >= mark) {
+                            int other = elems[mark];
+                            elems[loc[q]] = other;
+                            loc[other] = loc[q];
+                            elems[mark] = q;
+                            loc[q] = mark;
+                            if (marked[b]++ == 0) {
+                                touched[touchedCount++] = b;
+                            }
+                        }
+                    }
+                }
+
+                for (int i = 0; i < touchedCount; i++) {
+                    int b = touched[i];
+                    int split = first[b] + marked[b];
+                    marked[b] = 0;
+                    if (split == end[b]) {
+                        continue;
+                    }
+                    // The smaller half becomes the new block, so relabelling stays within the log n bound.
+                    int nb = blocks++;
+                    if (split - first[b] <= end[b] - split) {
+                        first[nb] = first[b];
+                        end[nb] = split;
+                        first[b] = split;
+                    } else {
+                        first[nb] = split;
+                        end[nb] = end[b];
+                        end[b] = split;
+                    }
+                    for (int j = first[nb]; j < end[nb]; j++) {
+                        blockOf[elems[j]] = nb;
+                    }
+                    if (pending[b]) {
+                        pending[nb] = true;
+                        worklist[pendingCount++] = nb;
+                    } else {
+                        int smaller = end[nb] - first[nb] <= end[b] - first[b] ? nb : b;
+                        pending[smaller] = true;
+                        worklist[pendingCount++] = smaller;
+                    }
+                }
+            }
+        }
+
+        // States equivalent to the sink can never accept and are dropped, except the initial state.
+        int deadBlock = blockOf[sink];
+        int[] blockRep = new int[blocks];
+        Arrays.fill(blockRep, -1);
+        for (int s = 0; s < m; s++) {
+            int b = blockOf[s];
+            if (b == deadBlock && s != 0) {
+                continue;
+            }
+            if (blockRep[b] < 0 || original[s] < blockRep[b]) {
+                blockRep[b] = original[s];
+            }
+        }
+        for (int s = 0; s < m; s++) {
+            int b = blockOf[s];
+            rep[original[s]] = b == deadBlock ? (s == 0 ? initial : -1) : blockRep[b];
+        }
+        return rep;
+    }
+}
@@ -0,0 +1,59 @@
+package fsm.core.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// Bounded lock-free queue for many producers and a single consumer.
+final class MpscRingBuffer {
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();     // next sequence a producer will claim
+    private volatile long head;                           // next sequence the consumer will read
+
+    MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    // Returns false without waiting if the buffer is full.
+    boolean offer(String message) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head > mask) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.lazySet((int) sequence & mask, message);
+        return true;
+    }
+
+    // Hands up to max messages to the consumer in order; called only from the consumer thread.
+    int drain(Consumer<String> consumer, int max) {
+        long sequence = head;
+        int count = 0;
+        while (count < max) {
+            int index = (int) sequence & mask;
+            String message = slots.get(index);
+            if (message == null) {
+                break;      // empty, or a producer has claimed the slot but not published yet
+            }
+            slots.lazySet(index, null);
+            consumer.accept(message);
+            sequence++;
+            count++;
+        }
+        head = sequence;
+        return count;
+    }
+
+    int size() {
+        return (int) (tail.get() - head);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,216 @@
+package fsm.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Runs one long input on several cores. The input is split into chunks; every chunk but the first is
+ * simulated from all states at once, giving a state -> state mapping for that chunk. Composing the
+ * mappings in order yields exactly the state a sequential run would end in. Runs that start from
+ * different states usually merge after a few characters, so only the distinct states are advanced.
+ */
+public final class ParallelExecutor {
+    public static final int MIN_PARALLEL_LENGTH = 1 << 20;   // shorter inputs run sequentially
+    private static final int MIN_CHUNK = 1 << 18;
+
+    private final Automaton automaton;
+    private final ForkJoinPool pool;
+    private final boolean skipLineBreaks;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    public ParallelExecutor(Automaton automaton) {
+        this(automaton, ForkJoinPool.commonPool(), false);
+    }
+
+    public ParallelExecutor(Automaton automaton, ForkJoinPool pool, boolean skipLineBreaks) {
+        this.automaton = automaton;
+        this.pool = pool;
+        this.skipLineBreaks = skipLineBreaks;
+    }
+
+    public int run(CharSequence input) {
+        int initial = automaton.initialState();
+        return initial < 0 ? Automaton.NO_INITIAL_STATE : run(initial, input);
+    }
+
+    // Final state after reading input from the given state, or a negative Automaton result code.
+    public int run(int start, CharSequence input) {
+        return run(start, input, null);
+    }
+
+    // As run(start, input); when the run fails and failedAt is given, failedAt[0] is set to the index of
+    // the character it fails on. Only the chunk the run fails in is read again to find it.
+    public int run(int start, CharSequence input, int[] failedAt) {
+        int length = input.length();
+        int chunks = (int) Math.min(pool.getParallelism() * 4L, length / MIN_CHUNK);
+        // Lazy engines cannot map chunks: their states only exist on the thread that built them.
+        if (chunks <= 1 || length < MIN_PARALLEL_LENGTH || automaton.isLazy()) {
+            return runFrom(start, input, 0, length, failedAt);
+        }
+
+        int[] bounds = new int[chunks + 1];
+        for (int i = 0; i <= chunks; i++) {
+            bounds[i] = (int) ((long) length * i / chunks);
+        }
+        int[][] mappings = new int[chunks][];
+        int[] firstResult = new int[1];
+        pool.invoke(new ChunkTask(input, bounds, mappings, firstResult, start, 0, chunks));
+
+        int state = firstResult[0];
+        int before = start;         // state the last composed chunk started in
+        int chunk = 0;
+        for (int i = 1; i < chunks && state >= 0; i++) {
+            before = state;
+            chunk = i;
+            state = mappings[i][state];
+        }
+        if (state < 0 && failedAt != null) {
+            runFrom(before, input, bounds[chunk], bounds[chunk + 1], failedAt);
+        }
+        return state;
+    }
+
+    private int runFrom(int state, CharSequence input, int from, int to, int[] failedAt) {
+        for (int i = from; i < to; i++) {
+            char ch = input.charAt(i);
+            if (skipLineBreaks && (ch == '\n' || ch == '\r')) {
+                continue;
+            }
+            int symbol = automaton.symbolIndex(ch);
+            state = symbol < 0 ? Automaton.INVALID_SYMBOL : automaton.next(state, symbol);
+            if (state < 0) {
+                if (failedAt != null) {
+                    failedAt[0] = i;
+                }
+                return symbol < 0 ? Automaton.INVALID_SYMBOL : Automaton.NO_TRANSITION;
+            }
+        }
+        return state;
+    }
+
+    // For every start state, the state reached at the end of the chunk (or a negative result code).
+    private int[] mapChunk(CharSequence input, int from, int to) {
+        int n = automaton.stateCount();
+        Scratch work = scratch.get();
+        int[] current = work.current;
+        int[] mergedInto = work.mergedInto;
+        int[] live = work.live;
+        int[] owner = work.owner;
+        int[] stamp = work.stamp;
+        for (int s = 0; s < n; s++) {
+            current[s] = s;
+            mergedInto[s] = s;
+            live[s] = s;
+        }
+        int liveCount = n;
+
+        int step = work.restartSteps(to - from);
+        for (int i = from; i < to && liveCount > 0; i++) {
+            char ch = input.charAt(i);
+            if (skipLineBreaks && (ch == '\n' || ch == '\r')) {
+                continue;
+            }
+            int symbol = automaton.symbolIndex(ch);
+            if (symbol < 0) {
+                for (int j = 0; j < liveCount; j++) {
+                    current[live[j]] = Automaton.INVALID_SYMBOL;
+                }
+                break;
+            }
+            step++;
+            int kept = 0;
+            for (int j = 0; j < liveCount; j++) {
+                int slot = live[j];
+                int target = automaton.next(current[slot], symbol);
+                if (target < 0) {
+                    current[slot] = Automaton.NO_TRANSITION;
+                } else if (stamp[target] == step) {
+                    mergedInto[slot] = owner[target];
+                } else {
+                    stamp[target] = step;
+                    owner[target] = slot;
+                    current[slot] = target;
+                    live[kept++] = slot;
+                }
+            }
+            liveCount = kept;
+        }
+        work.step = step;
+
+        int[] mapping = new int[n];
+        for (int s = 0; s < n; s++) {
+            int root = s;
+            while (mergedInto[root] != root) {
+                root = mergedInto[root];
+            }
+            mergedInto[s] = root;
+            mapping[s] = current[root];
+        }
+        return mapping;
+    }
+
+    // Per-thread arrays of mapChunk, reused by every chunk the thread maps. Steps keep counting across
+    // chunks, so stamps from earlier chunks never match and the arrays need no clearing.
+    private final class Scratch {
+        final int[] current;        // slot -> state it is in; slot s started in state s
+        final int[] mergedInto;     // slot -> slot it merged with, or itself while still running
+        final int[] live;
+        final int[] owner;          // state -> slot that reached it in this step
+        final int[] stamp;          // state -> step in which owner was set
+        int step;
+
+        Scratch() {
+            int n = automaton.stateCount();
+            current = new int[n];
+            mergedInto = new int[n];
+            live = new int[n];
+            owner = new int[n];
+            stamp = new int[n];
+        }
+
+        // Step to count on from for a chunk of at most length steps; clears the stamps before the count overflows.
+        int restartSteps(int length) {
+            if (step > Integer.MAX_VALUE - length) {
+                Arrays.fill(stamp, 0);
+                step = 0;
+            }
+            return step;
+        }
+    }
+
+    private final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence input;
+        private final int[] bounds;
+        private final int[][] mappings;
+        private final int[] firstResult;
+        private final int start;
+        private final int from;
+        private final int to;
+
+        ChunkTask(CharSequence input, int[] bounds, int[][] mappings, int[] firstResult, int start, int from, int to) {
+            this.input = input;
+            this.bounds = bounds;
+            this.mappings = mappings;
+            this.firstResult = firstResult;
+            this.start = start;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(input, bounds, mappings, firstResult, start, from, mid),
+                        new ChunkTask(input, bounds, mappings, firstResult, start, mid, to));
+            } else if (from == 0) {
+                firstResult[0] = runFrom(start, input, bounds[0], bounds[1], null);     // the true start is known
+            } else {
+                mappings[from] = mapChunk(input, bounds[from], bounds[from + 1]);
+            }
+        }
+    }
+}
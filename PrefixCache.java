@@ -0,0 +1,283 @@
+package fsm.core;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Bounded radix tree of input prefixes seen by FSM.run, each mapped to the state it leads to. A run
+ * resumes from the deepest cached prefix of its input and only executes the rest. Edges hold whole
+ * substrings, so skipping a cached prefix costs a string comparison instead of a table lookup per
+ * character; every edge also keeps the state after each of its characters, so a run that leaves the
+ * tree inside an edge still resumes where the input and the label part. Only the first MAX_DEPTH
+ * characters of an input are indexed. When the edge labels exceed the character budget the tree is
+ * flushed and refilled, and it is flushed as well the first time it sees a newer definition version.
+ *
+ * Nodes are immutable. Lookups walk the current tree without locking; an insert copies the nodes on
+ * its path under the lock and publishes the new root. A prefix is only inserted the second time it is
+ * missed, as tracked by a lossy table of prefix hashes, so inputs seen once do not take the lock or
+ * flush the tree.
+ */
+public final class PrefixCache {
+    static final int MAX_DEPTH = 1024;
+    private static final int ADMISSION_SLOTS = 1 << 12;
+
+    private final long capacity;        // characters in edge labels
+    private volatile Tree tree = new Tree(new Node("", new int[0]), -1);
+    private long size;                  // size, nodes and flushes are guarded by the lock
+    private long nodes;
+    private long flushes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final int[] seen = new int[ADMISSION_SLOTS];    // prefix hash per slot; racy, as a lost write only delays an insert
+
+    PrefixCache(long capacity) {
+        this.capacity = Math.max(capacity, MAX_DEPTH);
+    }
+
+    // Same result as engine.run(input); the engine must belong to the given definition version.
+    int run(long version, Automaton engine, CharSequence input) {
+        int initial = engine.initialState();
+        if (initial < 0) {
+            return Automaton.NO_INITIAL_STATE;
+        }
+        int length = input.length();
+        int indexed = Math.min(length, MAX_DEPTH);
+
+        long found = lookup(version, input, indexed);
+        int depth = (int) (found >>> 32);
+        int state = depth == 0 ? initial : (int) found;
+        if (depth < indexed) {
+            state = engine.run(state, input, depth, indexed);
+            if (state < 0) {
+                return state;
+            }
+            if (admit(input, indexed)) {
+                insert(version, engine, input, indexed);
+            }
+        }
+        return indexed == length ? state : engine.run(state, input, indexed, length);
+    }
+
+    // Depth of the deepest cached prefix in the high half, the state it leads to in the low half.
+    private long lookup(long current, CharSequence input, int limit) {
+        Tree tree = this.tree;
+        if (current != tree.version) {
+            misses.increment();
+            return 0;
+        }
+        Node node = tree.root;
+        int depth = 0;
+        int state = -1;
+        while (depth < limit) {
+            Node child = node.child(input.charAt(depth));
+            if (child == null) {
+                break;
+            }
+            if (child.label.length() > limit - depth || !matches(child.label, input, depth)) {
+                int common = commonPrefix(child.label, input, depth, limit);   // at least the first character
+                depth += common;
+                state = child.states[common - 1];
+                break;
+            }
+            depth += child.label.length();
+            node = child;
+            state = node.state;
+        }
+        if (depth == 0) {
+            misses.increment();
+        } else {
+            hits.increment();
+            skipped.add(depth);
+        }
+        return (long) depth << 32 | (state & 0xFFFFFFFFL);
+    }
+
+    // True the second time input[0, limit) is missed; the first time records its hash in the slot.
+    private boolean admit(CharSequence input, int limit) {
+        int hash;
+        if (limit == input.length() && input instanceof String) {
+            hash = input.hashCode();        // cached by the string
+        } else {
+            hash = 0;
+            for (int i = 0; i < limit; i++) {
+                hash = 31 * hash + input.charAt(i);
+            }
+        }
+        int slot = (hash ^ hash >>> 16) & (ADMISSION_SLOTS - 1);
+        if (seen[slot] == hash) {
+            return true;
+        }
+        seen[slot] = hash;
+        return false;
+    }
+
+    // Adds input[0, limit), which the engine runs without failing.
+    private synchronized void insert(long current, Automaton engine, CharSequence input, int limit) {
+        Tree tree = this.tree;
+        Node root = tree.root;
+        if (current != tree.version) {
+            if (current < tree.version) {
+                return;                     // run of a definition that has been replaced meanwhile
+            }
+            root = flush();
+        } else if (size + limit > capacity) {
+            root = flush();
+        }
+        this.tree = new Tree(insert(root, engine.initialState(), engine, input, 0, limit), current);
+    }
+
+    // Copy of node, reached with depth characters in nodeState, with input[depth, limit) added below it.
+    private Node insert(Node node, int nodeState, Automaton engine, CharSequence input, int depth, int limit) {
+        if (depth == limit) {
+            return node;
+        }
+        Node child = node.child(input.charAt(depth));
+        if (child == null) {
+            String label = input.subSequence(depth, limit).toString();
+            int[] states = new int[label.length()];
+            for (int i = 0, state = nodeState; i < states.length; i++) {
+                state = engine.next(state, engine.symbolIndex(label.charAt(i)));
+                states[i] = state;
+            }
+            size += label.length();
+            nodes++;
+            return node.with(new Node(label, states));
+        }
+        int common = commonPrefix(child.label, input, depth, limit);
+        Node next = child;
+        if (common < child.label.length()) {
+            next = new Node(child.label.substring(0, common), Arrays.copyOf(child.states, common)).with(child.split(common));
+            nodes++;
+        }
+        Node inserted = insert(next, next.state, engine, input, depth + common, limit);
+        return inserted == child ? node : node.with(inserted);
+    }
+
+    private static boolean matches(String label, CharSequence input, int at) {
+        if (input instanceof String) {
+            return ((String) input).regionMatches(at, label, 0, label.length());
+        }
+        for (int i = 0; i < label.length(); i++) {
+            if (input.charAt(at + i) != label.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int commonPrefix(String label, CharSequence input, int from, int to) {
+        int n = Math.min(label.length(), to - from);
+        int i = 0;
+        while (i < n && label.charAt(i) == input.charAt(from + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    // Empties the tree; returns the new root. Callers hold the lock.
+    private Node flush() {
+        if (nodes > 0) {
+            flushes++;
+        }
+        size = 0;
+        nodes = 0;
+        return new Node("", new int[0]);
+    }
+
+    public synchronized void clear() {
+        tree = new Tree(flush(), tree.version);
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    // Characters currently held in edge labels.
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized long nodes() {
+        return nodes;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    // Characters that were not executed because their prefix was cached.
+    public long skippedCharacters() {
+        return skipped.sum();
+    }
+
+    public synchronized long flushes() {
+        return flushes;
+    }
+
+    private static final class Tree {
+        final Node root;
+        final long version;                 // definition version the tree was filled for
+
+        Tree(Node root, long version) {
+            this.root = root;
+            this.version = version;
+        }
+    }
+
+    private static final class Node {
+        final String label;                 // characters on the edge into this node
+        final int[] states;                 // state after each label character, continuing from the parent
+        final int state;                    // state after reading every label from the root to here, -1 at the root
+        private final char[] firsts;
+        private final Node[] children;
+
+        Node(String label, int[] states) {
+            this(label, states, new char[0], new Node[0]);
+        }
+
+        private Node(String label, int[] states, char[] firsts, Node[] children) {
+            this.label = label;
+            this.states = states;
+            this.state = states.length == 0 ? -1 : states[states.length - 1];
+            this.firsts = firsts;
+            this.children = children;
+        }
+
+        Node child(char first) {
+            for (int i = 0; i < firsts.length; i++) {
+                if (firsts[i] == first) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        // Copy with the child added, or in place of the child with the same first character.
+        Node with(Node child) {
+            char first = child.label.charAt(0);
+            for (int i = 0; i < firsts.length; i++) {
+                if (firsts[i] == first) {
+                    Node[] replaced = children.clone();
+                    replaced[i] = child;
+                    return new Node(label, states, firsts, replaced);
+                }
+            }
+            int n = firsts.length;
+            char[] addedFirsts = Arrays.copyOf(firsts, n + 1);
+            Node[] added = Arrays.copyOf(children, n + 1);
+            addedFirsts[n] = first;
+            added[n] = child;
+            return new Node(label, states, addedFirsts, added);
+        }
+
+        // This node below an edge that now ends after the first at label characters.
+        Node split(int at) {
+            return new Node(label.substring(at), Arrays.copyOfRange(states, at, states.length), firsts, children);
+        }
+    }
+}
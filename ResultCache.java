@@ -0,0 +1,139 @@
+package fsm.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Size-bounded LRU cache of quiet execution results, keyed by input. The cache is split into
+ * segments by hash so concurrent lookups rarely share a lock; each segment evicts its least recently
+ * used entry. Every segment remembers the definition version it was filled for and empties itself
+ * the first time it sees a newer one, so a changed FSM never answers from stale results.
+ */
+public final class ResultCache {
+    static final int MISS = Integer.MIN_VALUE;
+    static final int MAX_KEY_LENGTH = 4096;          // longer inputs are executed but not cached
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    ResultCache(int capacity) {
+        this.capacity = Math.max(capacity, SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(this.capacity / SEGMENTS);
+        }
+    }
+
+    // Cached run() result for the input at this definition version, or MISS.
+    int get(long version, CharSequence input) {
+        if (input.length() > MAX_KEY_LENGTH) {
+            misses.increment();
+            return MISS;
+        }
+        String key = input.toString();
+        int result = segment(key).get(version, key);
+        (result == MISS ? misses : hits).increment();
+        return result;
+    }
+
+    void put(long version, CharSequence input, int result) {
+        if (input.length() <= MAX_KEY_LENGTH) {
+            String key = input.toString();
+            segment(key).put(version, key, result);
+        }
+    }
+
+    private Segment segment(String key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    // Segments emptied because the definition changed.
+    public long invalidations() {
+        return invalidations.sum();
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private final class Segment {
+        private final LinkedHashMap<String, Integer> entries;
+        private long version = -1;
+
+        Segment(int limit) {
+            // Access order: the eldest entry is the least recently used one.
+            entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                    if (size() > limit) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized int get(long current, String key) {
+            if (version != current) {
+                return MISS;
+            }
+            Integer result = entries.get(key);
+            return result == null ? MISS : result;
+        }
+
+        synchronized void put(long current, String key, int result) {
+            if (version != current) {
+                if (version > current) {
+                    return;                 // result of an execution that started before the last change
+                }
+                if (!entries.isEmpty()) {
+                    invalidations.increment();
+                }
+                entries.clear();
+                version = current;
+            }
+            entries.put(key, result);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package fsm.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.LongConsumer;
+
+/*
+ * Finds every accepted substring of a file. The file is memory-mapped in chunks and every chunk is
+ * searched on its own by the unanchored engine (LazyDfa.searching), as if nothing had been read before
+ * it. Matches that start in an earlier chunk are invisible to that search, so the chunks are stitched
+ * in order afterwards: the FSM states still alive at the end of chunk k-1 are run anchored into chunk k
+ * until they die out, and every position where they accept but the chunk's own search did not is
+ * added. Subset steps distribute over union, so this finds exactly the matches of one sequential
+ * search while the stitching only reads as far as the longest match that crosses a boundary.
+ *
+ * A match is reported by its end offset, the byte offset just past its last character. Bytes are read
+ * as Latin-1 characters; an invalid symbol ends every match in progress.
+ *
+ * Chunks are stitched and their matches emitted in order on the calling thread, each as soon as it and
+ * every chunk before it have been searched. A chunk that finishes early holds at most BUFFERED end
+ * offsets in memory and spills the rest to a temporary file until its turn comes; only the few matches
+ * that cross a boundary are kept in memory as a whole.
+ */
+public final class ScanExecutor {
+    static final int MIN_CHUNK = 1 << 20;
+    private static final int MAX_CHUNK = 1 << 30;      // one mapping per chunk, indexed by int
+    private static final int BUFFERED = 1 << 16;        // end offsets a chunk holds before spilling them
+
+    private final LazyDfa anchored;
+    private final LazyDfa search;
+    private final ForkJoinPool pool;
+
+    public ScanExecutor(FsmSnapshot snapshot) {
+        this(snapshot, ForkJoinPool.commonPool());
+    }
+
+    public ScanExecutor(FsmSnapshot snapshot, ForkJoinPool pool) {
+        Automaton engine = snapshot.automaton();
+        if (engine instanceof LazyDfa) {
+            anchored = (LazyDfa) engine;
+        } else {
+            Automaton table = snapshot.table() != null ? snapshot.table() : engine;
+            anchored = new LazyDfa(table, List.of(), LazyDfa.DEFAULT_BUDGET);
+        }
+        this.search = anchored.searching();
+        this.pool = pool;
+    }
+
+    // Number of matches in the file; their end offsets go to matches in increasing order unless it is null.
+    public long scan(Path file, LongConsumer matches) throws IOException {
+        if (search.initialState() < 0) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long count = Math.max(1, Math.min(pool.getParallelism() * 4L, size / MIN_CHUNK));
+            count = Math.max(count, (size + MAX_CHUNK - 1) / MAX_CHUNK);
+            Chunk[] chunks = new Chunk[(int) count];
+            ForkJoinTask<?>[] searches = new ForkJoinTask<?>[chunks.length];
+            for (int i = 0; i < chunks.length; i++) {
+                long from = size * i / count;
+                long to = size * (i + 1) / count;
+                chunks[i] = new Chunk(from, channel.map(FileChannel.MapMode.READ_ONLY, from, to - from), matches != null);
+                searches[i] = ForkJoinTask.adapt(chunks[i]::search);
+            }
+
+            long total = 0;
+            int[] carried = null;
+            try {
+                for (int i = 0; i < chunks.length && chunks.length > 1; i++) {
+                    pool.execute(searches[i]);
+                }
+                for (int k = 0; k < chunks.length; k++) {
+                    Chunk chunk = chunks[k];
+                    if (chunks.length == 1) {
+                        searches[k].invoke();
+                    } else {
+                        searches[k].join();
+                    }
+                    carried = k == 0 ? chunk.end : stitch(carried, chunk);
+                    total += chunk.count;
+                    if (matches != null) {
+                        chunk.emit(matches);
+                    }
+                    chunk.discard();
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                for (int k = 0; k < chunks.length; k++) {
+                    searches[k].quietlyJoin();
+                    chunks[k].discard();
+                }
+            }
+            return total;
+        }
+    }
+
+    // Adds the matches of chunk that started in earlier chunks, whose FSM states alive at its start are
+    // carried; returns the states alive after it.
+    private int[] stitch(int[] carried, Chunk chunk) {
+        if (carried.length == 0) {
+            return chunk.end;
+        }
+        int state = anchored.stateOf(carried);          // FSM states that entered the chunk
+        int own = search.initialState();                // what the chunk's own search saw
+        for (int i = 0; i < chunk.length && state >= 0; i++) {
+            int symbol = search.symbolIndex((char) (chunk.bytes.get(i) & 0xFF));
+            if (symbol < 0) {
+                state = -1;
+                break;
+            }
+            own = search.next(own, symbol);
+            state = anchored.next(state, symbol);
+            if (state >= 0 && anchored.isFinal(state) && !search.isFinal(own)) {
+                chunk.addLate(chunk.start + i + 1);
+            }
+        }
+        return state < 0 ? chunk.end : union(chunk.end, anchored.stateSet(state));
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] merged = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || i < a.length && a[i] < b[j]) {
+                merged[n++] = a[i++];
+            } else {
+                if (i < a.length && a[i] == b[j]) {
+                    i++;
+                }
+                merged[n++] = b[j++];
+            }
+        }
+        return Arrays.copyOf(merged, n);
+    }
+
+    private final class Chunk {
+        final long start;
+        final int length;
+        final MappedByteBuffer bytes;
+        long count;
+        long[] offsets;                     // end offsets found by the chunk's own search, null when only counting
+        int size;
+        FileChannel spill;                  // earlier end offsets beyond BUFFERED, null until needed
+        long spilled;                       // bytes in spill
+        ByteBuffer block;                   // transfers offsets to and from spill
+        long[] late = new long[0];          // end offsets of matches that started in an earlier chunk
+        int lateSize;
+        int[] end;                          // FSM states alive after the chunk's own search
+
+        Chunk(long start, MappedByteBuffer bytes, boolean collect) {
+            this.start = start;
+            this.length = bytes.limit();
+            this.bytes = bytes;
+            this.offsets = collect ? new long[16] : null;
+        }
+
+        void search() {
+            int state = search.scan(search.initialState(), bytes, 0, length, start, this::add);
+            end = search.stateSet(state);
+        }
+
+        private void add(long offset) {
+            count++;
+            if (offsets != null) {
+                if (size == offsets.length) {
+                    if (size < BUFFERED) {
+                        offsets = Arrays.copyOf(offsets, size * 2);
+                    } else {
+                        spill();
+                    }
+                }
+                offsets[size++] = offset;
+            }
+        }
+
+        private void spill() {
+            try {
+                if (spill == null) {
+                    spill = FileChannel.open(Files.createTempFile("fsm-scan", ".offsets"), StandardOpenOption.READ,
+                            StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                    block = ByteBuffer.allocate(BUFFERED * Long.BYTES);
+                }
+                block.clear();
+                block.asLongBuffer().put(offsets, 0, size);
+                block.limit(size * Long.BYTES);
+                while (block.hasRemaining()) {
+                    spilled += spill.write(block, spilled);
+                }
+                size = 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void addLate(long offset) {
+            count++;
+            if (lateSize == late.length) {
+                late = Arrays.copyOf(late, Math.max(16, lateSize * 2));
+            }
+            late[lateSize++] = offset;
+        }
+
+        // The spilled, the buffered and the late offsets are each ascending, and disjoint.
+        void emit(LongConsumer matches) throws IOException {
+            int j = 0;
+            for (long at = 0; at < spilled; ) {
+                block.clear();
+                block.limit((int) Math.min(block.capacity(), spilled - at));
+                while (block.hasRemaining()) {
+                    at += spill.read(block, at);
+                }
+                block.flip();
+                while (block.hasRemaining()) {
+                    long offset = block.getLong();
+                    j = emitLate(matches, j, offset);
+                    matches.accept(offset);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                j = emitLate(matches, j, offsets[i]);
+                matches.accept(offsets[i]);
+            }
+            emitLate(matches, j, Long.MAX_VALUE);
+        }
+
+        // Emits the late offsets from j on that lie below offset; returns the index of the next one.
+        private int emitLate(LongConsumer matches, int j, long offset) {
+            while (j < lateSize && late[j] < offset) {
+                matches.accept(late[j++]);
+            }
+            return j;
+        }
+
+        // Drops the offsets and deletes the spill file.
+        void discard() throws IOException {
+            offsets = null;
+            late = null;
+            if (spill != null) {
+                spill.close();
+                spill = null;
+            }
+        }
+    }
+}
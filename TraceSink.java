@@ -0,0 +1,14 @@
+package fsm.core;
+
+// Receives the states visited by a traced execution. Every callback is optional.
+public interface TraceSink {
+    TraceSink NONE = new TraceSink() {};
+
+    default void state(String state) {}
+
+    default void invalidSymbol(char symbol) {}
+
+    default void noTransition(String state, String symbol) {}
+
+    default void result(boolean accepted) {}
+}
@@ -4,7 +4,7 @@ import java.io.Serializable;
 
 public class Transition implements Serializable {
     private static final long serialVersionUID = 1L;
-
+    public static final String EPSILON = "EPSILON";     // symbol of a move that reads no input
 
     private final String symbol;
     private final String currentState;
@@ -30,6 +30,10 @@ public class Transition implements Serializable {
         return nextState;
     }
 
+    public boolean isEpsilon() {
+        return symbol.equals(EPSILON);
+    }
+
     @Override
     public String toString() {
         return symbol + " " + currentState + " -> " + nextState;
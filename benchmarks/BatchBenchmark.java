@@ -0,0 +1,83 @@
+package fsm.bench;
+
+import fsm.core.Automaton;
+import fsm.core.InterleavedExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Batches of 4096 short inputs on one thread, one input at a time or interleaved, across table sizes
+ * from L1-resident (32 KB) to well past L2 (6 MB). Scores are characters per second. With gather=true
+ * the interleaved loop loads its next rows with Vector API gathers (fsm-vector), when the module is
+ * available; the fork adds it, and setUp fails rather than silently measuring the scalar loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BatchBenchmark {
+    private static final int INPUTS = 4096;
+    private static final int LENGTH = 64;
+
+    @Param({"1000", "30000", "200000"})
+    int states;
+
+    @Param({"false", "true"})
+    boolean gather;
+
+    private Automaton automaton;
+    private InterleavedExecutor executor;
+    private String[] inputs;
+    private boolean[] results;
+
+    @Setup
+    public void setUp() {
+        QuietOutput.mute();
+        automaton = RandomDfa.generate(states, 8, 1.0, 14).automaton();
+        inputs = new String[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            inputs[i] = RandomDfa.input(automaton, LENGTH, 1000 + i);
+        }
+        results = new boolean[INPUTS];
+        executor = new InterleavedExecutor(automaton, gather);
+        if (executor.usesGather() != gather) {
+            throw new IllegalStateException("Vector API gathers are not available.");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        QuietOutput.restore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS * LENGTH)
+    public boolean[] plain() {
+        for (int i = 0; i < INPUTS; i++) {
+            results[i] = automaton.accepts(automaton.run(inputs[i]));
+        }
+        return results;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS * LENGTH)
+    public boolean[] interleaved() {
+        executor.accepts(inputs, results, 0, INPUTS);
+        return results;
+    }
+}
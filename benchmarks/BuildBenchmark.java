@@ -0,0 +1,158 @@
+package fsm.bench;
+
+import fsm.core.FSM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Bulk construction through addSymbol/addState/addTransition. addTransition scores transitions per
+ * second; scaling builds one machine of n transitions per shot and scores milliseconds per build.
+ *
+ *   java -cp benchmarks/target/benchmarks.jar fsm.bench.BuildBenchmark [max slope]
+ *
+ * runs the scaling sweep, fits log(time) against log(n) and exits with 1 when the slope exceeds max
+ * slope (default 1.5): a linear build has slope 1, one that scans the machine per transition slope 2.
+ * The fork's heap is large enough that the builds rarely collect, so the slope is that of addTransition.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BuildBenchmark {
+    private static final int STATES = 10_000;
+    private static final int SYMBOLS = 10;
+
+    @Setup
+    public void setUp() {
+        QuietOutput.mute();
+    }
+
+    @TearDown
+    public void tearDown() {
+        QuietOutput.restore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATES * SYMBOLS)
+    public int addTransition() {
+        return RandomDfa.generate(STATES, SYMBOLS, 1.0, 5).getTransitions().size();
+    }
+
+    // n / 10 states with one transition per symbol each to a seeded random target. Symbols and states
+    // are declared and the arguments prepared before every shot, so only the addTransition loop is timed.
+    @State(Scope.Thread)
+    public static class Sweep {
+        @Param({"50000", "100000", "200000"})
+        int n;
+
+        String[] symbols;
+        String[] names;
+        String[] targets;
+        FSM fsm;
+
+        @Setup(Level.Trial)
+        public void prepare() {
+            symbols = new String[SYMBOLS];
+            for (int c = 0; c < SYMBOLS; c++) {
+                symbols[c] = String.valueOf((char) ('0' + c));
+            }
+            names = new String[n / SYMBOLS];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = "S" + i;
+            }
+            targets = new String[n];
+            Random random = new Random(n);
+            for (int t = 0; t < n; t++) {
+                targets[t] = names[random.nextInt(names.length)];
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void declare() {
+            fsm = new FSM();
+            for (String symbol : symbols) {
+                fsm.addSymbol(symbol);
+            }
+            for (String name : names) {
+                fsm.addState(name);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void check() {
+            if (fsm.getTransitions().size() != n) {
+                throw new IllegalStateException("Built " + fsm.getTransitions().size() + " of " + n + " transitions.");
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 20)
+    public FSM scaling(Sweep sweep) {
+        FSM fsm = sweep.fsm;
+        String[] symbols = sweep.symbols;
+        String[] names = sweep.names;
+        String[] targets = sweep.targets;
+        for (int s = 0, t = 0; s < names.length; s++) {
+            for (int c = 0; c < SYMBOLS; c++, t++) {
+                fsm.addTransition(symbols[c], names[s], targets[t]);
+            }
+        }
+        return fsm;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        double maxSlope = args.length > 0 ? Double.parseDouble(args[0]) : 1.5;
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(BuildBenchmark.class.getName() + ".scaling$")
+                .build()).run();
+
+        // Least squares fit of log(time) = slope * log(n) + c.
+        int count = 0;
+        double sumX = 0;
+        double sumY = 0;
+        double sumXX = 0;
+        double sumXY = 0;
+        for (RunResult result : results) {
+            double x = Math.log(Double.parseDouble(result.getParams().getParam("n")));
+            double y = Math.log(result.getPrimaryResult().getScore());
+            count++;
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumXY += x * y;
+        }
+        double slope = (count * sumXY - sumX * sumY) / (count * sumXX - sumX * sumX);
+        System.out.printf("addTransition scaling: log-log slope %.2f over %d sizes (limit %.2f)%n", slope, count, maxSlope);
+        if (!(slope <= maxSlope)) {
+            System.out.println("FAILED: addTransition grows super-linearly.");
+            System.exit(1);
+        }
+    }
+}
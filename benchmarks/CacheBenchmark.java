@@ -0,0 +1,108 @@
+package fsm.bench;
+
+import fsm.core.FSM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Result cache and prefix cache, off and on. skewed: 1024 executions drawn from 4000 distinct inputs of
+ * 256 characters, most calls hitting a few hundred of them. prefixes: 1024 inputs on the large machine,
+ * each one of 64 shared 512-character prefixes followed by 32 random characters. Scores are characters
+ * per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CacheBenchmark {
+    private static final int CALLS = 1024;
+    private static final int SKEWED_LENGTH = 256;
+    private static final int PREFIX_LENGTH = 512;
+    private static final int SUFFIX_LENGTH = 32;
+
+    @Param({"false", "true"})
+    boolean cached;
+
+    private FSM skewed;
+    private String[] traffic;
+    private FSM prefixed;
+    private String[] corpus;
+
+    @Setup
+    public void setUp() {
+        QuietOutput.mute();
+        int distinct = 4000;
+        skewed = RandomDfa.generate(1_000, 10, 1.0, 9);
+        String[] inputs = new String[distinct];
+        for (int i = 0; i < distinct; i++) {
+            inputs[i] = RandomDfa.input(skewed.automaton(), SKEWED_LENGTH, i);
+        }
+        traffic = new String[CALLS];
+        Random random = new Random(10);
+        for (int i = 0; i < CALLS; i++) {
+            traffic[i] = inputs[(int) (distinct * Math.pow(random.nextDouble(), 4))];
+        }
+
+        prefixed = RandomDfa.generate(200_000, 10, 1.0, 2);
+        random = new Random(11);
+        String[] prefixes = new String[64];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = RandomDfa.input(prefixed.automaton(), PREFIX_LENGTH, 100 + i);
+        }
+        String symbols = "0123456789";
+        corpus = new String[CALLS];
+        for (int i = 0; i < CALLS; i++) {
+            StringBuilder input = new StringBuilder(prefixes[random.nextInt(prefixes.length)]);
+            for (int c = 0; c < SUFFIX_LENGTH; c++) {
+                input.append(symbols.charAt(random.nextInt(symbols.length())));
+            }
+            corpus[i] = input.toString();
+        }
+
+        if (cached) {
+            skewed.enableResultCache(distinct / 2);
+            prefixed.enablePrefixCache(1 << 20);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        QuietOutput.restore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS * SKEWED_LENGTH)
+    public int skewed() {
+        int accepted = 0;
+        for (String input : traffic) {
+            accepted += skewed.accepts(input) ? 1 : 0;
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS * (PREFIX_LENGTH + SUFFIX_LENGTH))
+    public long prefixes() {
+        long sum = 0;
+        for (String input : corpus) {
+            sum += prefixed.run(input);
+        }
+        return sum;
+    }
+}
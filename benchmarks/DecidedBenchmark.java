@@ -0,0 +1,87 @@
+package fsm.bench;
+
+import fsm.core.FSM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * FSM.run walks all 4096 characters of every input; FSM.accepts stops once the run is in a dead state.
+ * With sink inputs fall into one after about 100 characters; without, no input does, which measures
+ * what the check costs. Scores are characters per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DecidedBenchmark {
+    private static final int INPUTS = 256;
+    private static final int LENGTH = 4096;
+
+    @Param({"true", "false"})
+    boolean sink;
+
+    private FSM fsm;
+    private String[] inputs;
+
+    @Setup
+    public void setUp() {
+        QuietOutput.mute();
+        fsm = RandomDfa.generate(50_000, 8, 1.0, 17);
+        fsm.addState("SINK");
+        Random random = new Random(18);
+        for (int c = 0; c < 8; c++) {
+            String symbol = fsm.automaton().symbolName(c);
+            fsm.addTransition(symbol, "SINK", "SINK");
+            for (int s = 0; s < 50_000 && sink; s++) {
+                if (random.nextInt(100) == 0) {
+                    fsm.addTransition(symbol, "S" + s, "SINK");
+                }
+            }
+        }
+        inputs = new String[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            inputs[i] = RandomDfa.input(fsm.automaton(), LENGTH, 3000 + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        QuietOutput.restore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS * LENGTH)
+    public int run() {
+        int accepted = 0;
+        for (String input : inputs) {
+            accepted += fsm.automaton().accepts(fsm.run(input)) ? 1 : 0;
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS * LENGTH)
+    public int accepts() {
+        int accepted = 0;
+        for (String input : inputs) {
+            accepted += fsm.accepts(input) ? 1 : 0;
+        }
+        return accepted;
+    }
+}
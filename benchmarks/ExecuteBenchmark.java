@@ -0,0 +1,113 @@
+package fsm.bench;
+
+import fsm.core.Automaton;
+import fsm.core.FSM;
+import fsm.core.FsmSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Single inputs on the table engine, as FSM.run with metrics off and on, as raw bytes and on a mapped
+ * image, for a 16-state and a 200,000-state machine. Scores are characters per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ExecuteBenchmark {
+    static final int SHORT = 16;
+    static final int LONG = 1 << 20;
+
+    @Param({"small", "large"})
+    String machine;
+
+    private FsmSnapshot snapshot;
+    private FSM fsm;
+    private FSM measured;
+    private Automaton image;
+    private String shortInput;
+    private String longInput;
+    private byte[] longBytes;
+    private Path imageFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        QuietOutput.mute();
+        fsm = machine.equals("small") ? RandomDfa.generate(16, 4, 1.0, 1) : RandomDfa.generate(200_000, 10, 1.0, 2);
+        snapshot = fsm.snapshot();
+        shortInput = RandomDfa.input(snapshot.automaton(), SHORT, SHORT);
+        longInput = RandomDfa.input(snapshot.automaton(), LONG, LONG);
+        longBytes = longInput.getBytes(StandardCharsets.ISO_8859_1);
+
+        measured = machine.equals("small") ? RandomDfa.generate(16, 4, 1.0, 1) : RandomDfa.generate(200_000, 10, 1.0, 2);
+        measured.enableMetrics();
+
+        imageFile = Files.createTempFile("fsm-bench", ".img");
+        fsm.compileToImage(imageFile.toString());
+        FSM mapped = new FSM();
+        mapped.loadFromFile(imageFile.toString());
+        image = mapped.automaton();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        measured.disableMetrics();
+        Files.deleteIfExists(imageFile);
+        QuietOutput.restore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SHORT)
+    public int tableShort() {
+        return snapshot.run(shortInput);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LONG)
+    public int tableLong() {
+        return snapshot.run(longInput);
+    }
+
+    // Through the alphabet map, without decoding into a String.
+    @Benchmark
+    @OperationsPerInvocation(LONG)
+    public int bytesLong() {
+        return snapshot.automaton().run(longBytes);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LONG)
+    public int imageLong() {
+        return image.run(longInput);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SHORT)
+    public int runShort() {
+        return fsm.run(shortInput);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SHORT)
+    public int runShortMetrics() {
+        return measured.run(shortInput);
+    }
+}
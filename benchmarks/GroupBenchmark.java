@@ -0,0 +1,89 @@
+package fsm.bench;
+
+import fsm.core.FSM;
+import fsm.core.FsmGroup;
+import fsm.core.FsmSnapshot;
+import fsm.core.TraceSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * N 64-state machines over the same 1024 inputs: FSM.execute once per machine, or one lockstep pass of
+ * an FsmGroup. Scores are input characters per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GroupBenchmark {
+    private static final int INPUTS = 1024;
+    private static final int LENGTH = 64;
+
+    @Param({"8", "32"})
+    int machines;
+
+    private List<FSM> fsms;
+    private FsmGroup group;
+    private String[] inputs;
+
+    @Setup
+    public void setUp() {
+        QuietOutput.mute();
+        fsms = new ArrayList<>();
+        List<FsmSnapshot> snapshots = new ArrayList<>();
+        for (int m = 0; m < machines; m++) {
+            FSM fsm = RandomDfa.generate(64, 8, 1.0, 100 + m);
+            fsms.add(fsm);
+            snapshots.add(fsm.snapshot());
+        }
+        inputs = new String[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            inputs[i] = RandomDfa.input(fsms.get(0).automaton(), LENGTH, 2000 + i);
+        }
+        group = new FsmGroup(snapshots);
+    }
+
+    @TearDown
+    public void tearDown() {
+        QuietOutput.restore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS * LENGTH)
+    public int sequential() {
+        int accepted = 0;
+        for (String input : inputs) {
+            for (FSM fsm : fsms) {
+                accepted += fsm.execute(input, TraceSink.NONE) ? 1 : 0;
+            }
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS * LENGTH)
+    public int lockstep() {
+        int accepted = 0;
+        for (String input : inputs) {
+            accepted += group.accepts(input).cardinality();
+        }
+        return accepted;
+    }
+}
@@ -0,0 +1,69 @@
+package fsm.bench;
+
+import fsm.core.FSM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// compileToFile/loadFromFile and compileToImage/loadFromFile round trips of a 100,000-state machine.
+// Scores are transitions per second.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IoBenchmark {
+    private static final int STATES = 100_000;
+    private static final int SYMBOLS = 10;
+
+    private FSM fsm;
+    private Path binary;
+    private Path image;
+
+    @Setup
+    public void setUp() throws Exception {
+        QuietOutput.mute();
+        fsm = RandomDfa.generate(STATES, SYMBOLS, 1.0, 7);
+        binary = Files.createTempFile("fsm-bench", ".fsm");
+        image = Files.createTempFile("fsm-bench", ".img");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(binary);
+        Files.deleteIfExists(image);
+        QuietOutput.restore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATES * SYMBOLS)
+    public int binaryRoundTrip() {
+        fsm.compileToFile(binary.toString());
+        FSM loaded = new FSM();
+        loaded.loadFromFile(binary.toString());
+        return loaded.getTransitions().size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATES * SYMBOLS)
+    public int imageRoundTrip() {
+        fsm.compileToImage(image.toString());
+        FSM loaded = new FSM();
+        loaded.loadFromFile(image.toString());
+        return loaded.automaton().stateCount();
+    }
+}
@@ -0,0 +1,61 @@
+package fsm.bench;
+
+import fsm.core.FSM;
+import fsm.core.FsmSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Generated bytecode executors (COMPILE-JIT) on the 16-state machine. Scores are characters per second.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JitBenchmark {
+    private FsmSnapshot snapshot;
+    private String shortInput;
+    private String longInput;
+
+    @Setup
+    public void setUp() {
+        QuietOutput.mute();
+        FSM fsm = RandomDfa.generate(16, 4, 1.0, 1);
+        fsm.setJitEnabled(true);
+        snapshot = fsm.snapshot();
+        if (!snapshot.isJitCompiled()) {
+            throw new IllegalStateException("machine could not be JIT compiled");
+        }
+        shortInput = RandomDfa.input(snapshot.automaton(), ExecuteBenchmark.SHORT, ExecuteBenchmark.SHORT);
+        longInput = RandomDfa.input(snapshot.automaton(), ExecuteBenchmark.LONG, ExecuteBenchmark.LONG);
+    }
+
+    @TearDown
+    public void tearDown() {
+        QuietOutput.restore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ExecuteBenchmark.SHORT)
+    public int jitShort() {
+        return snapshot.run(shortInput);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ExecuteBenchmark.LONG)
+    public int jitLong() {
+        return snapshot.run(longInput);
+    }
+}
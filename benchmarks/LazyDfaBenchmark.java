@@ -0,0 +1,73 @@
+package fsm.bench;
+
+import fsm.core.Automaton;
+import fsm.core.FSM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Lazy subset construction on "the k-th symbol from the end is 0", which has 2^k DFA states if built
+ * eagerly. k = 10 fits the default cache; k = 20 keeps flushing it. Scores are characters per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LazyDfaBenchmark {
+    @Param({"10", "20"})
+    int k;
+
+    private Automaton automaton;
+    private String input;
+
+    @Setup
+    public void setUp() {
+        QuietOutput.mute();
+        automaton = kthFromEnd(k).automaton();
+        input = RandomDfa.input(RandomDfa.generate(1, 2, 1.0, 12).automaton(), ExecuteBenchmark.LONG, 13);
+    }
+
+    @TearDown
+    public void tearDown() {
+        QuietOutput.restore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ExecuteBenchmark.LONG)
+    public int lazyLong() {
+        return automaton.run(input);
+    }
+
+    static FSM kthFromEnd(int k) {
+        FSM fsm = new FSM();
+        fsm.addSymbol("0");
+        fsm.addSymbol("1");
+        for (int i = 0; i <= k; i++) {
+            fsm.addState("N" + i);
+        }
+        fsm.addFinalState("N" + k);
+        fsm.addTransition("0", "N0", "N0");
+        fsm.addTransition("1", "N0", "N0");
+        fsm.addTransitionTarget("0", "N0", "N1");
+        for (int i = 1; i < k; i++) {
+            fsm.addTransition("0", "N" + i, "N" + (i + 1));
+            fsm.addTransition("1", "N" + i, "N" + (i + 1));
+        }
+        return fsm;
+    }
+}
@@ -0,0 +1,183 @@
+package fsm.bench;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Load generator for the execution server (Main --serve).
+ *
+ *   java fsm.bench.LoadGenerator <port|unix:path> [-c connections] [-d seconds] [-p pipeline depth]
+ *                                [-l input length] [-s symbols] [-w warm-up seconds]
+ *
+ * Every connection sends a window of pipeline-depth requests in one write, reads their answers and
+ * sends the next window, for the given duration. Inputs are random strings over the symbols. The
+ * latency of a request is the time from writing its window to reading its answer. Reports requests
+ * per second and p50/p99/max latency over all connections.
+ */
+public final class LoadGenerator {
+    private String endpoint;
+    private int connections = 4;
+    private double seconds = 5;
+    private double warmupSeconds = 1;
+    private int depth = 16;
+    private int length = 32;
+    private String symbols = "01";
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-c":
+                    generator.connections = Integer.parseInt(args[++i]);
+                    break;
+                case "-d":
+                    generator.seconds = Double.parseDouble(args[++i]);
+                    break;
+                case "-w":
+                    generator.warmupSeconds = Double.parseDouble(args[++i]);
+                    break;
+                case "-p":
+                    generator.depth = Integer.parseInt(args[++i]);
+                    break;
+                case "-l":
+                    generator.length = Integer.parseInt(args[++i]);
+                    break;
+                case "-s":
+                    generator.symbols = args[++i];
+                    break;
+                default:
+                    generator.endpoint = args[i];
+                    break;
+            }
+        }
+        if (generator.endpoint == null) {
+            System.out.println("Usage: LoadGenerator <port|unix:path> [-c connections] [-d seconds] [-p pipeline depth]"
+                    + " [-l input length] [-s symbols] [-w warm-up seconds]");
+            System.exit(1);
+        }
+        generator.run();
+    }
+
+    private void run() throws Exception {
+        long warmupEnd = System.nanoTime() + (long) (warmupSeconds * 1e9);
+        long end = warmupEnd + (long) (seconds * 1e9);
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Client client = new Client(open(), new Random(i), warmupEnd, end);
+            clients.add(client);
+            client.start();
+        }
+        long requests = 0;
+        long accepted = 0;
+        long[] latencies = new long[0];
+        for (Client client : clients) {
+            client.join();
+            if (client.failure != null) {
+                throw client.failure;
+            }
+            requests += client.count;
+            accepted += client.accepted;
+            int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + client.count);
+            System.arraycopy(client.latencies, 0, latencies, offset, client.count);
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%d connections, pipeline depth %d, inputs of %d characters%n", connections, depth, length);
+        System.out.printf("requests %d (accepted %d) in %.1f s: %.0f requests/s%n", requests, accepted, seconds, requests / seconds);
+        System.out.printf("latency (us): p50 %.1f, p99 %.1f, max %.1f%n",
+                percentile(latencies, 50) / 1e3, percentile(latencies, 99) / 1e3,
+                latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e3);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p / 100 * sorted.length) - 1)];
+    }
+
+    private SocketChannel open() throws IOException {
+        if (endpoint.startsWith("unix:")) {
+            SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(Path.of(endpoint.substring("unix:".length()))));
+            return channel;
+        }
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(endpoint)));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return channel;
+    }
+
+    private final class Client extends Thread {
+        final SocketChannel channel;
+        final Random random;
+        final long warmupEnd;
+        final long end;
+        long[] latencies = new long[1 << 16];
+        int count;                          // requests answered after the warm-up
+        long accepted;
+        Exception failure;
+
+        Client(SocketChannel channel, Random random, long warmupEnd, long end) {
+            this.channel = channel;
+            this.random = random;
+            this.warmupEnd = warmupEnd;
+            this.end = end;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer window = ByteBuffer.allocate(depth * (4 + length));
+            ByteBuffer answers = ByteBuffer.allocate(depth);
+            try (channel) {
+                while (true) {
+                    window.clear();
+                    for (int r = 0; r < depth; r++) {
+                        window.putInt(length);
+                        for (int i = 0; i < length; i++) {
+                            window.put((byte) symbols.charAt(random.nextInt(symbols.length())));
+                        }
+                    }
+                    window.flip();
+                    long sent = System.nanoTime();
+                    if (sent >= end) {
+                        return;
+                    }
+                    while (window.hasRemaining()) {
+                        channel.write(window);
+                    }
+                    answers.clear();
+                    while (answers.hasRemaining()) {
+                        if (channel.read(answers) < 0) {
+                            throw new IOException("Server closed the connection.");
+                        }
+                    }
+                    long received = System.nanoTime();
+                    if (sent < warmupEnd) {
+                        continue;
+                    }
+                    if (count + depth > latencies.length) {
+                        latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                    }
+                    for (int r = 0; r < depth; r++) {
+                        latencies[count++] = received - sent;
+                        accepted += answers.get(r);
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package fsm.bench;
+
+import fsm.core.Automaton;
+import fsm.core.ParallelExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Speculative parallel execution of one 16M-character input on the small machine, by pool size.
+// Scores are characters per second.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParallelBenchmark {
+    private static final int LENGTH = 1 << 24;
+
+    @Param({"1", "2", "4", "8"})
+    int cores;
+
+    private ForkJoinPool pool;
+    private ParallelExecutor executor;
+    private String input;
+
+    @Setup
+    public void setUp() {
+        QuietOutput.mute();
+        Automaton automaton = RandomDfa.generate(16, 4, 1.0, 1).automaton();
+        input = RandomDfa.input(automaton, LENGTH, 4);
+        pool = new ForkJoinPool(cores);
+        executor = new ParallelExecutor(automaton, pool, false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+        QuietOutput.restore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int parallel() {
+        return executor.run(input);
+    }
+}
@@ -0,0 +1,64 @@
+package fsm.bench;
+
+import fsm.core.FSM;
+import fsm.core.io.CommandParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * commands: CommandParser.parse over every command of a 2,000-state definition script; scores are
+ * scripts per second. load: streaming LOAD of a 100,000-state script; scores are loads per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParseBenchmark {
+    private String[] commands;
+    private Path script;
+
+    @Setup
+    public void setUp() throws Exception {
+        QuietOutput.mute();
+        commands = RandomDfa.script(2_000, 10, 6).split("\n");
+        script = Files.createTempFile("fsm-bench", ".txt");
+        Files.writeString(script, RandomDfa.script(100_000, 10, 8));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(script);
+        QuietOutput.restore();
+    }
+
+    @Benchmark
+    public int commands() {
+        CommandParser parser = new CommandParser(new FSM());
+        for (String command : commands) {
+            parser.parse(command);
+        }
+        return commands.length;
+    }
+
+    @Benchmark
+    public int load() {
+        FSM loaded = new FSM();
+        new CommandParser(loaded).parse("LOAD " + script);
+        return loaded.getTransitions().size();
+    }
+}
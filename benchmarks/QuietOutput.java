@@ -0,0 +1,19 @@
+package fsm.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// The FSM reports on System.out; benchmarks mute it from setup to teardown so printing is not measured.
+final class QuietOutput {
+    private static final PrintStream console = System.out;
+
+    private QuietOutput() {}
+
+    static void mute() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    static void restore() {
+        System.setOut(console);
+    }
+}
@@ -0,0 +1,112 @@
+package fsm.bench;
+
+import fsm.core.Automaton;
+import fsm.core.FSM;
+
+import java.util.Random;
+
+// Synthetic machines and inputs for the benchmarks. Everything is derived from a seed, so runs are repeatable.
+public final class RandomDfa {
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private RandomDfa() {}
+
+    // A random machine with the given size; density is the fraction of (state, symbol) pairs with a transition.
+    public static FSM generate(int states, int symbols, double density, long seed) {
+        Random random = new Random(seed);
+        FSM fsm = new FSM();
+        for (int c = 0; c < symbols; c++) {
+            fsm.addSymbol(String.valueOf(ALPHABET.charAt(c)));
+        }
+        for (int s = 0; s < states; s++) {
+            fsm.addState("S" + s);
+        }
+        for (int s = 0; s < states; s++) {
+            if (random.nextInt(4) == 0) {
+                fsm.addFinalState("S" + s);
+            }
+        }
+        for (int s = 0; s < states; s++) {
+            for (int c = 0; c < symbols; c++) {
+                if (random.nextDouble() < density) {
+                    fsm.addTransition(String.valueOf(ALPHABET.charAt(c)), "S" + s, "S" + random.nextInt(states));
+                }
+            }
+        }
+        return fsm;
+    }
+
+    // Complete random machine in which symbol c behaves exactly like symbol c % behaviours.
+    public static FSM grouped(int states, int symbols, int behaviours, long seed) {
+        Random random = new Random(seed);
+        FSM fsm = new FSM();
+        for (int c = 0; c < symbols; c++) {
+            fsm.addSymbol(String.valueOf(ALPHABET.charAt(c)));
+        }
+        for (int s = 0; s < states; s++) {
+            fsm.addState("S" + s);
+        }
+        for (int s = 0; s < states; s++) {
+            if (random.nextInt(4) == 0) {
+                fsm.addFinalState("S" + s);
+            }
+        }
+        for (int s = 0; s < states; s++) {
+            int[] targets = new int[behaviours];
+            for (int b = 0; b < behaviours; b++) {
+                targets[b] = random.nextInt(states);
+            }
+            for (int c = 0; c < symbols; c++) {
+                fsm.addTransition(String.valueOf(ALPHABET.charAt(c)), "S" + s, "S" + targets[c % behaviours]);
+            }
+        }
+        return fsm;
+    }
+
+    // Definition script in the same syntax LOAD and Main accept.
+    public static String script(int states, int symbols, long seed) {
+        Random random = new Random(seed);
+        StringBuilder script = new StringBuilder("SYMBOLS");
+        for (int c = 0; c < symbols; c++) {
+            script.append(' ').append(ALPHABET.charAt(c));
+        }
+        script.append(";\nSTATES");
+        for (int s = 0; s < states; s++) {
+            script.append(" S").append(s);
+        }
+        script.append(";\nFINAL-STATES S0;\n");
+        for (int s = 0; s < states; s++) {
+            script.append("TRANSITIONS ");
+            for (int c = 0; c < symbols; c++) {
+                if (c > 0) {
+                    script.append(", ");
+                }
+                script.append(ALPHABET.charAt(c)).append(" S").append(s).append(" S").append(random.nextInt(states));
+            }
+            script.append(";\n");
+        }
+        return script.toString();
+    }
+
+    // Random input over the declared symbols. Walks existing transitions, so it rarely fails early.
+    public static String input(Automaton automaton, int length, long seed) {
+        Random random = new Random(seed);
+        StringBuilder input = new StringBuilder(length);
+        int state = automaton.initialState();
+        int symbols = automaton.symbolCount();
+        while (input.length() < length) {
+            int symbol = random.nextInt(symbols);
+            for (int tries = 0; tries < symbols && automaton.next(state, symbol) < 0; tries++) {
+                symbol = (symbol + 1) % symbols;
+            }
+            int next = automaton.next(state, symbol);
+            if (next < 0) {
+                state = automaton.initialState();       // dead end: keep the text, restart the walk
+            } else {
+                state = next;
+            }
+            input.append(automaton.symbolName(symbol));
+        }
+        return input.toString();
+    }
+}
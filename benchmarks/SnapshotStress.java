@@ -0,0 +1,312 @@
+package fsm.bench;
+
+import fsm.core.Automaton;
+import fsm.core.FSM;
+import fsm.core.FsmSnapshot;
+import fsm.core.Transition;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/*
+ * Concurrency stress check for snapshot publication: reader threads execute while a writer redefines
+ * the machine, and every result must match one published definition.
+ *
+ *   java fsm.bench.SnapshotStress [-t readers] [-d seconds per configuration]
+ *
+ * The writer replaces the machine with generation g = 1, 2, ... inside FSM.update: states G<g>S0 to
+ * G<g>S<m-1> with m = 2 + g % 7, '1' stepping to the next state modulo m, '0' staying, and final state
+ * G<g>S<g % m>. Odd generations also declare '2' without transitions, so inputs holding a '2' end in
+ * NO_TRANSITION there and in INVALID_SYMBOL in even ones. Readers pick an input and one of:
+ *
+ *   - a pinned snapshot: its version may not go backwards, its generation (read from the initial
+ *     state's name) must lie within the generations published around the call, and the result and
+ *     its state name must be the ones that generation gives;
+ *   - FSM.run and FSM.accepts: the result must be the one of some generation published around the call;
+ *   - FSM.getStates and FSM.getTransitions: every state must be of one such generation, and all of
+ *     them and all its transitions must be there; PRINT must not fail.
+ *
+ * Halfway through every generation, with the states declared but no transitions yet, the writer runs
+ * and compiles the machine, as EXECUTE or PRINT inside a loaded script do; readers must never see that
+ * half-defined machine. This runs with caches off, the result cache, the prefix cache, metrics with
+ * the result cache, and a journal that compacts every few records. Prints the checks per configuration
+ * and exits with 1 on any mismatch or exception.
+ */
+public final class SnapshotStress {
+    private static final int INPUTS = 256;
+    private static final int MAX_REPORTS = 10;
+
+    private int readers = 4;
+    private double seconds = 2;
+
+    private final AtomicLong published = new AtomicLong();
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final String[] inputs = new String[INPUTS];
+    private volatile boolean running;
+
+    public static void main(String[] args) throws Exception {
+        SnapshotStress stress = new SnapshotStress();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-t":
+                    stress.readers = Integer.parseInt(args[++i]);
+                    break;
+                case "-d":
+                    stress.seconds = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    System.out.println("Usage: SnapshotStress [-t readers] [-d seconds per configuration]");
+                    System.exit(1);
+            }
+        }
+        boolean passed = true;
+        for (String configuration : new String[] {"plain", "result-cache", "prefix-cache", "metrics", "journal"}) {
+            passed &= stress.run(configuration);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private SnapshotStress() {
+        Random random = new Random(7);
+        for (int i = 0; i < INPUTS; i++) {
+            StringBuilder input = new StringBuilder();
+            int length = random.nextInt(48);
+            for (int j = 0; j < length; j++) {
+                input.append(random.nextInt(16) == 0 ? '2' : (char) ('0' + random.nextInt(2)));
+            }
+            inputs[i] = input.toString();
+        }
+    }
+
+    private boolean run(String configuration) throws Exception {
+        FSM fsm = new FSM();
+        Path directory = null;
+        QuietOutput.mute();
+        try {
+            switch (configuration) {
+                case "result-cache":
+                    fsm.enableResultCache(INPUTS / 2);
+                    break;
+                case "prefix-cache":
+                    fsm.enablePrefixCache(1 << 16);
+                    break;
+                case "metrics":
+                    fsm.enableMetrics();
+                    fsm.enableResultCache(INPUTS / 2);
+                    break;
+                case "journal":
+                    directory = Files.createTempDirectory("fsm-stress");
+                    fsm.openJournal(directory, 1, 1 << 10);
+                    break;
+                default:
+                    break;
+            }
+            published.set(0);
+            checks.reset();
+            mismatches.reset();
+            fsm.update(() -> define(fsm, 0));
+            running = true;
+            List<Reader> threads = new ArrayList<>();
+            for (int i = 0; i < readers; i++) {
+                Reader reader = new Reader(fsm, new Random(i));
+                threads.add(reader);
+                reader.start();
+            }
+            long end = System.nanoTime() + (long) (seconds * 1e9);
+            long generation = 0;
+            while (System.nanoTime() < end) {
+                long g = ++generation;
+                fsm.update(() -> define(fsm, g));
+                published.set(g);
+            }
+            running = false;
+            Exception failure = null;
+            for (Reader reader : threads) {
+                reader.join();
+                if (reader.failure != null) {
+                    failure = reader.failure;
+                }
+            }
+            fsm.disableMetrics();
+            fsm.closeJournal();
+            QuietOutput.restore();
+            System.out.printf("%s: %d checks over %d generations, %d mismatches%n",
+                    configuration, checks.sum(), generation, mismatches.sum());
+            if (failure != null) {
+                failure.printStackTrace(System.out);
+                return false;
+            }
+            return mismatches.sum() == 0;
+        } finally {
+            QuietOutput.restore();
+            if (directory != null) {
+                try (Stream<Path> files = Files.walk(directory)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+                }
+            }
+        }
+    }
+
+    private static void define(FSM fsm, long g) {
+        int m = states(g);
+        fsm.clear();
+        fsm.addSymbol("0");
+        fsm.addSymbol("1");
+        if (g % 2 == 1) {
+            fsm.addSymbol("2");
+        }
+        for (int i = 0; i < m; i++) {
+            fsm.addState(name(g, i));
+        }
+        fsm.setInitialState(name(g, 0));
+        fsm.addFinalState(name(g, (int) (g % m)));
+        fsm.run("1");
+        fsm.compiled();
+        for (int i = 0; i < m; i++) {
+            fsm.addTransition("0", name(g, i), name(g, i));
+            fsm.addTransition("1", name(g, i), name(g, (i + 1) % m));
+        }
+    }
+
+    private static int states(long g) {
+        return 2 + (int) (g % 7);
+    }
+
+    private static String name(long g, int i) {
+        return "G" + g + "S" + i;
+    }
+
+    private static long generationOf(String name) {
+        return Long.parseLong(name.substring(1, name.indexOf('S')));
+    }
+
+    // Result of run(input) on generation g.
+    private static int expected(long g, String input) {
+        if (input.indexOf('2') >= 0) {
+            return g % 2 == 1 ? Automaton.NO_TRANSITION : Automaton.INVALID_SYMBOL;
+        }
+        int ones = 0;
+        for (int i = 0; i < input.length(); i++) {
+            ones += input.charAt(i) == '1' ? 1 : 0;
+        }
+        return ones % states(g);
+    }
+
+    private static boolean expectedAccepts(long g, String input) {
+        int result = expected(g, input);
+        return result >= 0 && result == g % states(g);
+    }
+
+    private final class Reader extends Thread {
+        final FSM fsm;
+        final Random random;
+        long lastVersion = -1;
+        Exception failure;
+
+        Reader(FSM fsm, Random random) {
+            this.fsm = fsm;
+            this.random = random;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    String input = inputs[random.nextInt(INPUTS)];
+                    long from = published.get();
+                    switch (random.nextInt(4)) {
+                        case 0:
+                            checkSnapshot(input, from);
+                            break;
+                        case 1: {
+                            int result = fsm.run(input);
+                            long to = published.get() + 1;
+                            long g = from;
+                            while (g <= to && expected(g, input) != result) {
+                                g++;
+                            }
+                            check(g <= to, "run(\"%s\") = %d matches no generation in [%d, %d]", input, result, from, to);
+                            break;
+                        }
+                        case 2:
+                            checkDefinition(from);
+                            break;
+                        default: {
+                            boolean result = fsm.accepts(input);
+                            long to = published.get() + 1;
+                            long g = from;
+                            while (g <= to && expectedAccepts(g, input) != result) {
+                                g++;
+                            }
+                            check(g <= to, "accepts(\"%s\") = %b matches no generation in [%d, %d]", input, result, from, to);
+                            break;
+                        }
+                    }
+                    checks.increment();
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        private void checkSnapshot(String input, long from) {
+            FsmSnapshot snapshot = fsm.snapshot();
+            check(snapshot.version() >= lastVersion, "snapshot version went back from %d to %d", lastVersion, snapshot.version());
+            lastVersion = snapshot.version();
+            Automaton engine = snapshot.automaton();
+            int result = snapshot.run(input);
+            long to = published.get() + 1;
+            long g = generationOf(engine.stateName(engine.initialState()));
+            check(g >= from && g <= to, "snapshot of generation %d outside [%d, %d]", g, from, to);
+            check(result == expected(g, input), "snapshot of generation %d: run(\"%s\") = %d", g, input, result);
+            if (result >= 0) {
+                check(engine.stateName(result).equals(name(g, result)), "snapshot of generation %d: state %d is %s",
+                        g, result, engine.stateName(result));
+            }
+            check(engine.stateCount() == states(g), "snapshot of generation %d has %d states", g, engine.stateCount());
+        }
+
+        private void checkDefinition(long from) {
+            Set<String> names = fsm.getStates();
+            long to = published.get() + 1;
+            long g = generationOf(names.iterator().next());
+            check(g >= from && g <= to, "states of generation %d outside [%d, %d]", g, from, to);
+            boolean complete = names.size() == states(g);
+            for (int i = 0; i < states(g); i++) {
+                complete &= names.contains(name(g, i));
+            }
+            check(complete, "states of generation %d: %s", g, names);
+
+            Collection<Transition> transitions = fsm.getTransitions();
+            to = published.get() + 1;
+            g = generationOf(transitions.iterator().next().getCurrentState());
+            check(g >= from && g <= to, "transitions of generation %d outside [%d, %d]", g, from, to);
+            complete = transitions.size() == 2 * states(g);
+            for (Transition t : transitions) {
+                complete &= generationOf(t.getCurrentState()) == g && generationOf(t.getNextState()) == g;
+            }
+            check(complete, "transitions of generation %d: %s", g, transitions);
+            fsm.print();
+        }
+
+        private void check(boolean condition, String format, Object... args) {
+            if (!condition) {
+                mismatches.increment();
+                if (mismatches.sum() <= MAX_REPORTS) {
+                    System.err.printf("mismatch: " + format + "%n", args);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package fsm.bench;
+
+import fsm.core.Automaton;
+import fsm.core.FSM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * 50,000 states and 36 symbols with 4 distinct behaviours: a 7 MB table per symbol, 0.8 MB per symbol
+ * class. Scores are characters per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SymbolClassBenchmark {
+    @Param({"false", "true"})
+    boolean classes;
+
+    private Automaton automaton;
+    private String input;
+
+    @Setup
+    public void setUp() {
+        QuietOutput.mute();
+        FSM fsm = RandomDfa.grouped(50_000, 36, 4, 15);
+        fsm.setSymbolClassesEnabled(classes);
+        automaton = fsm.automaton();
+        input = RandomDfa.input(automaton, ExecuteBenchmark.LONG, 16);
+    }
+
+    @TearDown
+    public void tearDown() {
+        QuietOutput.restore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ExecuteBenchmark.LONG)
+    public int groupedLong() {
+        return automaton.run(input);
+    }
+}
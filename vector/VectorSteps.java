@@ -0,0 +1,34 @@
+package fsm.core;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * InterleavedExecutor's inner loop with vector gathers: the column of every stream's next character is
+ * added to its row with scalar code, then one gather per vector of streams loads all their next rows.
+ * Streams past the last full vector, when fewer than STREAMS are left, step with scalar loads.
+ */
+final class VectorSteps implements InterleavedExecutor.Steps {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int ALPHABET_SIZE = CompiledFSM.ALPHABET_SIZE;
+
+    private final ThreadLocal<int[]> indexes = ThreadLocal.withInitial(() -> new int[InterleavedExecutor.STREAMS]);
+
+    @Override
+    public void advance(int[] next, int[] columnOf, int invalid, String[] text, int[] pos, int[] row, int active, int count) {
+        int[] index = indexes.get();
+        int vectors = SPECIES.loopBound(active);
+        for (int k = 0; k < count; k++) {
+            for (int j = 0; j < active; j++) {
+                char ch = text[j].charAt(pos[j] + k);
+                index[j] = row[j] + (ch < ALPHABET_SIZE ? columnOf[ch] : invalid);
+            }
+            for (int j = 0; j < vectors; j += SPECIES.length()) {
+                IntVector.fromArray(SPECIES, next, 0, index, j).intoArray(row, j);
+            }
+            for (int j = vectors; j < active; j++) {
+                row[j] = next[index[j]];
+            }
+        }
+    }
+}